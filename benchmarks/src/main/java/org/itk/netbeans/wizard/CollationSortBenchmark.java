@@ -0,0 +1,116 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.IOException;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openide.filesystems.FileObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorts the {@code entries} subfolders of a folder by name, as the Browse
+ * Folders dialog does when a folder is expanded: with the collator called
+ * for every comparison, as before, with collation keys computed once per
+ * sort, as on the first expansion, and with the cached collation keys of
+ * {@link BrowseFolders.CollatedFolder}, as when a folder is expanded again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class CollationSortBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private List<FileObject> folders;
+
+    @Setup
+    public void setUp() throws IOException {
+        folders = Arrays.asList(SyntheticTrees.createFlatFolders(entries).getChildren());
+    }
+
+    @Benchmark
+    public List<FileObject> collatorCompare() {
+        List<FileObject> l = new ArrayList<FileObject>(folders);
+        Collections.sort(l, new Comparator<FileObject>() { // #116545
+            Collator COLL = Collator.getInstance();
+            @Override
+            public int compare(FileObject f1, FileObject f2) {
+                return COLL.compare(f1.getNameExt(), f2.getNameExt());
+            }
+        });
+        return l;
+    }
+
+    @Benchmark
+    public List<FileObject> collationKeys() {
+        Collator collator = Collator.getInstance();
+        final List<CollationKey> keys = new ArrayList<CollationKey>(folders.size());
+        List<Integer> order = new ArrayList<Integer>(folders.size());
+        for (int i = 0; i < folders.size(); i++) {
+            keys.add(collator.getCollationKey(folders.get(i).getNameExt()));
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return keys.get(i1).compareTo(keys.get(i2));
+            }
+        });
+        List<FileObject> l = new ArrayList<FileObject>(order.size());
+        for (Integer i : order) {
+            l.add(folders.get(i));
+        }
+        return l;
+    }
+
+    @Benchmark
+    public List<FileObject> cachedCollationKeys() {
+        List<BrowseFolders.CollatedFolder> sorted = new ArrayList<BrowseFolders.CollatedFolder>(folders.size());
+        for (FileObject f : folders) {
+            sorted.add(new BrowseFolders.CollatedFolder(f));
+        }
+        Collections.sort(sorted);
+        List<FileObject> l = new ArrayList<FileObject>(sorted.size());
+        for (BrowseFolders.CollatedFolder f : sorted) {
+            l.add(f.folder);
+        }
+        return l;
+    }
+}
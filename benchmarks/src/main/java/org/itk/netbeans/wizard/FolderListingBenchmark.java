@@ -0,0 +1,110 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.SourceGroup;
+import org.openide.filesystems.FileObject;
+import org.openide.loaders.DataFolder;
+import org.openide.nodes.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lists a folder with {@code entries} subfolders the way the Browse Folders
+ * dialog and the physical view do, and indexes a tree with {@code entries}
+ * leaves for the find field of the dialog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class FolderListingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private FileObject folder;
+    private SourceGroup group;
+    private FileObject treeRoot;
+    private SourceGroup[] treeGroups;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = SyntheticTrees.createFlatFolders(entries);
+        Project project = SyntheticTrees.createProject(folder, 0);
+        group = SourceGroupIndex.forProject(project).getGroups()[0];
+
+        treeRoot = SyntheticTrees.createTree(entries);
+        treeGroups = SourceGroupIndex.forProject(SyntheticTrees.createProject(treeRoot, 0)).getGroups();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticTrees.deleteTree(treeRoot);
+    }
+
+    /**
+     * The sorted folder nodes shown when a folder is expanded in the Browse
+     * Folders dialog.
+     */
+    @Benchmark
+    public Node[] browseFolders() {
+        BrowseFolders.SourceGroupChildren children = new BrowseFolders.SourceGroupChildren(folder, group);
+        // waits until the subfolders are read
+        children.findLoadedChild(""); // NOI18N
+        return children.getNodes();
+    }
+
+    /**
+     * The visible nodes shown when a source group is expanded in the
+     * physical view.
+     */
+    @Benchmark
+    public Node[] physicalView() {
+        return DataFolder.findFolder(folder)
+                .createNodeChildren(PhysicalView.VisibilityQueryDataFilter.getDefault())
+                .getNodes(true);
+    }
+
+    /**
+     * Reads all folders of the tree for the find field of the dialog.
+     */
+    @Benchmark
+    public List<FolderPathIndex.Match> indexFolderPaths() {
+        FolderPathIndex index = FolderPathIndex.create(treeGroups);
+        index.run();
+        return index.find("lambda", 50); // NOI18N
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openide.filesystems.FileObject;
+import org.openide.loaders.DataObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Expands {@code ImageFilter.h} and {@code ImageFilter.hxx} into a folder
+ * with {@code entries} other files. The filters exist already and are up to
+ * date, so the templates are rendered and compared, but nothing is written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class GeneratorBenchmark {
+
+    /** number of filters created by one batch */
+    private static final int BATCH = 8;
+
+    @Param({"1000", "10000", "100000"})
+    public int entries;
+
+    private ItkFilterGenerator generator;
+    private ItkFilterSpec spec;
+    private List<ItkFilterSpec> batch;
+
+    @Setup
+    public void setUp() throws IOException {
+        FileObject folder = SyntheticTrees.createFlatFiles(entries);
+        generator = new ItkFilterGenerator(SyntheticTrees.copyTemplates());
+        spec = new ItkFilterSpec(folder, "BenchmarkFilter", "ImageToImageFilter", // NOI18N
+                ThreadingModel.DYNAMIC, LoopStyle.INDEXED, true, 2);
+        generator.generate(spec);
+
+        batch = new ArrayList<ItkFilterSpec>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(new ItkFilterSpec(folder, "BatchFilter" + i, "InPlaceImageFilter", // NOI18N
+                    ThreadingModel.CLASSIC, LoopStyle.values()[i % LoopStyle.values().length], false, 1));
+        }
+        generator.generateAll(batch);
+    }
+
+    @Benchmark
+    public Set<DataObject> regenerate() throws IOException {
+        return generator.regenerate(spec);
+    }
+
+    @Benchmark
+    public List<FileObject> regenerateAll() throws IOException {
+        return generator.regenerateAll(batch);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.netbeans.api.project.SourceGroup;
+import org.openide.filesystems.FileObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The checks the wizard panel runs while the user types: the unique name
+ * of a new filter in a folder with {@code entries} files, and the source
+ * group of a folder in a tree with {@code entries} leaves and one group per
+ * parent of a leaf.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class NameCheckBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Files {
+
+        @Param({"1000", "10000", "100000"})
+        public int entries;
+
+        FileObject folder;
+
+        @Setup
+        public void setUp() throws IOException {
+            folder = SyntheticTrees.createFlatFiles(entries);
+        }
+    }
+
+    /**
+     * Creates or deletes a file before each call, so that the names of the
+     * folder are read again.
+     */
+    @State(Scope.Thread)
+    public static class ChangedFiles {
+
+        private FileObject created;
+
+        @Setup(Level.Invocation)
+        public void change(Files files) throws IOException {
+            if (created == null) {
+                created = files.folder.createData("changed", "txt"); // NOI18N
+            } else {
+                created.delete();
+                created = null;
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Groups {
+
+        @Param({"1000", "10000", "100000"})
+        public int entries;
+
+        SourceGroupIndex index;
+        FileObject[] leaves;
+        int next;
+        private FileObject root;
+
+        @Setup
+        public void setUp() throws IOException {
+            root = SyntheticTrees.createTree(entries);
+            List<FileObject> l = SyntheticTrees.getLeaves(root);
+            leaves = l.toArray(new FileObject[l.size()]);
+            int depth = 0;
+            for (FileObject fo = leaves[0]; fo != root; fo = fo.getParent()) {
+                depth++;
+            }
+            index = SourceGroupIndex.forProject(SyntheticTrees.createProject(root, depth - 1));
+            // reads the groups
+            index.getGroups();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            SyntheticTrees.deleteTree(root);
+        }
+
+        FileObject nextLeaf() {
+            FileObject leaf = leaves[next];
+            next = (next + 1) % leaves.length;
+            return leaf;
+        }
+    }
+
+    @Benchmark
+    public String generateUniqueSuffix(Files files) {
+        return FolderNameIndex.generateUniqueSuffix(files.folder, "ImageFilter", "h", "hxx"); // NOI18N
+    }
+
+    @Benchmark
+    public String generateUniqueSuffixAfterChange(Files files, ChangedFiles changed) {
+        return FolderNameIndex.generateUniqueSuffix(files.folder, "ImageFilter", "h", "hxx"); // NOI18N
+    }
+
+    @Benchmark
+    public SourceGroup getPreselectedGroup(Groups groups) {
+        return NewItkFilterVisualPanel1.getPreselectedGroup(groups.index, groups.nextLeaf());
+    }
+
+    /**
+     * Like {@link #getPreselectedGroup} after the groups of the project
+     * changed, so that the index is built again.
+     */
+    @Benchmark
+    public SourceGroup getPreselectedGroupAfterChange(Groups groups) {
+        groups.index.stateChanged(null);
+        return NewItkFilterVisualPanel1.getPreselectedGroup(groups.index, groups.nextLeaf());
+    }
+}
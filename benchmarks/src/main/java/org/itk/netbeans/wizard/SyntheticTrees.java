@@ -0,0 +1,311 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyVetoException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import javax.swing.Icon;
+import javax.swing.event.ChangeListener;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectInformation;
+import org.netbeans.api.project.SourceGroup;
+import org.netbeans.api.project.Sources;
+import org.netbeans.spi.project.support.GenericSources;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileSystem;
+import org.openide.filesystems.FileUtil;
+import org.openide.filesystems.LocalFileSystem;
+import org.openide.util.Lookup;
+import org.openide.util.lookup.Lookups;
+
+/**
+ * Builds the synthetic projects the benchmarks run on. The names are
+ * shuffled and mix case and accents, so that neither the filesystem order
+ * nor the order of code points is the collation order.
+ * <p>
+ * Flat folders are created in a memory filesystem. Trees are created in a
+ * temporary directory instead, as the memory filesystem lists a folder by
+ * scanning all of its files: reading every folder of a tree with 100k
+ * folders would take hours there.
+ */
+final class SyntheticTrees {
+
+    /** number of subfolders of each folder of a tree */
+    static final int FAN_OUT = 10;
+
+    private static final String[] WORDS = {
+        "alpha", "Beta", "gamma", "Délta", "epsilon", "Zeta", "éta", "Theta", // NOI18N
+        "iota", "Kappa", "lambda", "Mu", "nü", "Xi", "omicron", "Pi" // NOI18N
+    };
+    /** the same trees for every run */
+    private static final long SEED = 42;
+
+    private SyntheticTrees() {
+    }
+
+    /**
+     * Creates a folder with {@code entries} subfolders.
+     */
+    static FileObject createFlatFolders(int entries) throws IOException {
+        FileObject folder = createRoot().createFolder("flat"); // NOI18N
+        for (String name : shuffledNames(entries)) {
+            folder.createFolder(name);
+        }
+        return folder;
+    }
+
+    /**
+     * Creates a folder with {@code entries} files. Every tenth one is an
+     * {@code ImageFilter<i>} header or source, as the wizard would have
+     * created, the others are unrelated.
+     */
+    static FileObject createFlatFiles(int entries) throws IOException {
+        FileObject folder = createRoot().createFolder("flat"); // NOI18N
+        List<String> names = shuffledNames(entries);
+        for (int i = 0; i < entries; i++) {
+            if (i % 10 == 0) {
+                // ImageFilter.h, ImageFilter.hxx, ImageFilter1.h, ...
+                String suffix = i < 20 ? "" : String.valueOf(i / 20); // NOI18N
+                folder.createData("ImageFilter" + suffix, i % 20 == 0 ? "h" : "hxx"); // NOI18N
+            } else {
+                folder.createData(names.get(i), "txt"); // NOI18N
+            }
+        }
+        return folder;
+    }
+
+    /**
+     * Creates a tree of folders, {@link #FAN_OUT} subfolders per folder and
+     * at least {@code entries} folders at its deepest level.
+     *
+     * @return the root folder of the tree
+     */
+    static FileObject createTree(int entries) throws IOException {
+        File dir = File.createTempFile("tree", ""); // NOI18N
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Cannot create " + dir); // NOI18N
+        }
+        List<File> level = Collections.singletonList(dir);
+        for (int size = FAN_OUT; level.size() < entries; size *= FAN_OUT) {
+            List<File> next = new ArrayList<File>(size);
+            for (File parent : level) {
+                for (String name : shuffledNames(FAN_OUT)) {
+                    File child = new File(parent, name);
+                    if (!child.mkdir()) {
+                        throw new IOException("Cannot create " + child); // NOI18N
+                    }
+                    next.add(child);
+                }
+            }
+            level = next;
+        }
+
+        LocalFileSystem fs = new LocalFileSystem();
+        try {
+            fs.setRootDirectory(dir);
+        } catch (PropertyVetoException ex) {
+            throw new IOException(ex);
+        }
+        return fs.getRoot();
+    }
+
+    /**
+     * Deletes a tree created by {@link #createTree}.
+     */
+    static void deleteTree(FileObject root) throws IOException {
+        delete(FileUtil.toFile(root));
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            throw new IOException("Cannot delete " + file); // NOI18N
+        }
+    }
+
+    /**
+     * Returns the folders at the deepest level of a tree created by
+     * {@link #createTree}, in a random order.
+     */
+    static List<FileObject> getLeaves(FileObject root) {
+        List<FileObject> level = Collections.singletonList(root);
+        while (true) {
+            List<FileObject> next = new ArrayList<FileObject>(level.size() * FAN_OUT);
+            for (FileObject parent : level) {
+                next.addAll(Arrays.asList(parent.getChildren()));
+            }
+            if (next.isEmpty()) {
+                break;
+            }
+            level = next;
+        }
+        List<FileObject> leaves = new ArrayList<FileObject>(level);
+        Collections.shuffle(leaves, new Random(SEED));
+        return leaves;
+    }
+
+    /**
+     * Creates a project with one source group for {@code root} and one for
+     * each folder at the given depth below it.
+     */
+    static Project createProject(FileObject root, int groupDepth) {
+        SyntheticProject project = new SyntheticProject(root);
+        List<SourceGroup> groups = new ArrayList<SourceGroup>();
+        groups.add(GenericSources.group(project, root, "root", "Root", null, null)); // NOI18N
+        List<FileObject> level = Collections.singletonList(root);
+        for (int depth = 0; depth < groupDepth; depth++) {
+            List<FileObject> next = new ArrayList<FileObject>();
+            for (FileObject parent : level) {
+                next.addAll(Arrays.asList(parent.getChildren()));
+            }
+            level = next;
+        }
+        if (groupDepth > 0) {
+            for (FileObject folder : level) {
+                String path = FileUtil.getRelativePath(root, folder);
+                groups.add(GenericSources.group(project, folder, path, path, null, null));
+            }
+        }
+        project.groups = groups.toArray(new SourceGroup[groups.size()]);
+        return project;
+    }
+
+    /**
+     * Copies the template from the module sources to the memory filesystem,
+     * together with its header template.
+     *
+     * @return the source template
+     */
+    static FileObject copyTemplates() throws IOException {
+        FileObject folder = createRoot().createFolder("Templates"); // NOI18N
+        copyResource(folder, "ImageFilter.h"); // NOI18N
+        return copyResource(folder, "ImageFilter.hxx"); // NOI18N
+    }
+
+    private static FileObject copyResource(FileObject folder, String name) throws IOException {
+        InputStream in = SyntheticTrees.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing resource " + name); // NOI18N
+        }
+        FileObject fo = folder.createData(name);
+        try {
+            OutputStream out = fo.getOutputStream();
+            try {
+                FileUtil.copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        return fo;
+    }
+
+    private static FileObject createRoot() {
+        FileSystem fs = FileUtil.createMemoryFileSystem();
+        return fs.getRoot();
+    }
+
+    private static List<String> shuffledNames(int count) {
+        Random random = new Random(SEED + count);
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(WORDS[random.nextInt(WORDS.length)] + i);
+        }
+        Collections.shuffle(names, random);
+        return names;
+    }
+
+    private static final class SyntheticProject implements Project, ProjectInformation, Sources {
+
+        private final FileObject directory;
+        private final Lookup lookup;
+        private SourceGroup[] groups;
+
+        SyntheticProject(FileObject directory) {
+            this.directory = directory;
+            this.lookup = Lookups.singleton(this);
+        }
+
+        @Override
+        public FileObject getProjectDirectory() {
+            return directory;
+        }
+
+        @Override
+        public Lookup getLookup() {
+            return lookup;
+        }
+
+        @Override
+        public SourceGroup[] getSourceGroups(String type) {
+            return groups.clone();
+        }
+
+        @Override
+        public void addChangeListener(ChangeListener listener) {
+        }
+
+        @Override
+        public void removeChangeListener(ChangeListener listener) {
+        }
+
+        @Override
+        public String getName() {
+            return "synthetic"; // NOI18N
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Synthetic"; // NOI18N
+        }
+
+        @Override
+        public Icon getIcon() {
+            return null;
+        }
+
+        @Override
+        public Project getProject() {
+            return this;
+        }
+
+        @Override
+        public void addPropertyChangeListener(PropertyChangeListener listener) {
+        }
+
+        @Override
+        public void removePropertyChangeListener(PropertyChangeListener listener) {
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.swing.tree.TreeNode;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.SourceGroup;
+import org.openide.explorer.view.Visualizer;
+import org.openide.filesystems.FileObject;
+import org.openide.loaders.DataFolder;
+import org.openide.nodes.FilterNode;
+import org.openide.nodes.Node;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Expands and collapses every folder of a tree with {@code entries} leaves
+ * in the Browse Folders dialog, depth first, and reports the heap that is
+ * still retained afterwards in the {@code retainedKilobytes} counter. The
+ * tree model is built by the explorer's {@link Visualizer}, which keeps the
+ * nodes as the tree view of the dialog does.
+ * <p>
+ * With {@code retention=released}, the children of collapsed folders are
+ * released like in {@code BrowseFolders.RetainingTreeView}, which only works
+ * on a displayed tree; with {@code retention=all}, they are kept, as before.
+ * The view keeps the folders containing the selection, but nothing is
+ * selected here, so the least recently collapsed folder is always released.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+// the counter is summed up over the iterations
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx3g"})
+public class TreeMemoryBenchmark {
+
+    /** the limit of {@code BrowseFolders.RetainingTreeView} */
+    private static final int MAX_COLLAPSED = 32;
+    /** milliseconds to wait for the nodes to be loaded and shown */
+    private static final long SHOW_TIMEOUT = 10000;
+
+    @Param({"100000"})
+    public int entries;
+
+    @Param({"all", "released"})
+    public String retention;
+
+    private FileObject folder;
+    private Node root;
+    private TreeNode rootVisualizer;
+    private long baseline;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        folder = SyntheticTrees.createTree(entries);
+        Project project = SyntheticTrees.createProject(folder, 0);
+        SourceGroup group = SourceGroupIndex.forProject(project).getGroups()[0];
+        // the node of a source group in the dialog
+        root = new FilterNode(
+                new PhysicalView.GroupNode(project, group, true, DataFolder.findFolder(folder)),
+                new BrowseFolders.SourceGroupChildren(folder, group));
+        baseline = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        root = null;
+        rootVisualizer = null;
+        SyntheticTrees.deleteTree(folder);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        /** heap retained by the browsed tree, after a full garbage collection */
+        public long retainedKilobytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedKilobytes = 0;
+        }
+    }
+
+    @Benchmark
+    public TreeNode browse(Counters counters) throws Exception {
+        final int limit = "released".equals(retention) ? MAX_COLLAPSED : Integer.MAX_VALUE; // NOI18N
+        Map<BrowseFolders.SourceGroupChildren, Boolean> collapsed =
+                new LinkedHashMap<BrowseFolders.SourceGroupChildren, Boolean>(MAX_COLLAPSED * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BrowseFolders.SourceGroupChildren, Boolean> eldest) {
+                if (size() > limit) {
+                    eldest.getKey().release();
+                    return true;
+                }
+                return false;
+            }
+        };
+        rootVisualizer = Visualizer.findVisualizer(root);
+        expand(root, collapsed);
+
+        // the visualizers are updated in the EDT
+        flushEventQueue();
+        counters.retainedKilobytes = (usedHeap() - baseline) / 1024;
+        return rootVisualizer;
+    }
+
+    private static void expand(Node node, Map<BrowseFolders.SourceGroupChildren, Boolean> collapsed) throws Exception {
+        BrowseFolders.SourceGroupChildren children = (BrowseFolders.SourceGroupChildren) node.getChildren();
+        collapsed.remove(children);
+        children.reloadIfReleased();
+        Node[] nodes = getLoadedNodes(children);
+        show(Visualizer.findVisualizer(node), nodes);
+        for (Node child : nodes) {
+            expand(child, collapsed);
+        }
+
+        collapsed.put(children, Boolean.TRUE);
+    }
+
+    /**
+     * Waits until the subfolders are read and their keys are set, which may
+     * happen after the loading task finished if the children are locked.
+     */
+    private static Node[] getLoadedNodes(BrowseFolders.SourceGroupChildren children) throws InterruptedException {
+        children.findLoadedChild(""); // NOI18N
+        long end = System.currentTimeMillis() + SHOW_TIMEOUT;
+        while (true) {
+            Node[] nodes = children.getNodes();
+            // only the wait node has no children of the dialog
+            if (nodes.length != 1 || nodes[0].getChildren() instanceof BrowseFolders.SourceGroupChildren) {
+                return nodes;
+            }
+            if (System.currentTimeMillis() > end) {
+                throw new IllegalStateException("The subfolders are not read"); // NOI18N
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits until {@code visualizer} shows {@code nodes}, as it is updated
+     * asynchronously, and creates the visualizers of the nodes like an
+     * expanded tree does.
+     */
+    private static void show(final TreeNode visualizer, final Node[] nodes) throws Exception {
+        final boolean[] shown = new boolean[1];
+        long end = System.currentTimeMillis() + SHOW_TIMEOUT;
+        while (true) {
+            EventQueue.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    boolean same = visualizer.getChildCount() == nodes.length;
+                    for (int i = 0; same && i < nodes.length; i++) {
+                        same = Visualizer.findNode(visualizer.getChildAt(i)) == nodes[i];
+                    }
+                    shown[0] = same;
+                }
+            });
+            if (shown[0]) {
+                return;
+            }
+            if (System.currentTimeMillis() > end) {
+                throw new IllegalStateException("The nodes of " + visualizer + " are not shown"); // NOI18N
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void flushEventQueue() throws InterruptedException, InvocationTargetException {
+        // runs twice, as the first events may post more
+        for (int i = 0; i < 2; i++) {
+            EventQueue.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -45,25 +45,40 @@
 package org.itk.netbeans.wizard;
 
 import java.awt.Dialog;
+import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyVetoException;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
 import javax.swing.JButton;
 import javax.swing.JScrollPane;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.TreePath;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.SourceGroup;
-import org.netbeans.api.queries.VisibilityQuery;
 import org.openide.DialogDescriptor;
 import org.openide.DialogDisplayer;
 import org.openide.awt.Mnemonics;
 import org.openide.explorer.ExplorerManager;
 import org.openide.explorer.view.BeanTreeView;
+import org.openide.explorer.view.Visualizer;
 import org.openide.filesystems.FileObject;
 import org.openide.loaders.DataFolder;
 import org.openide.loaders.DataObject;
@@ -71,10 +86,8 @@ import org.openide.nodes.AbstractNode;
 import org.openide.nodes.Children;
 import org.openide.nodes.FilterNode;
 import org.openide.nodes.Node;
-import org.openide.nodes.NodeNotFoundException;
-import org.openide.nodes.NodeOp;
 import org.openide.util.NbBundle;
-import org.openide.util.NbCollections;
+import org.openide.util.RequestProcessor;
 
 /**
  *
@@ -86,6 +99,25 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
     private final BeanTreeView btv;
     
     private static JScrollPane SAMPLE_SCROLL_PANE = new JScrollPane();
+
+    private static final RequestProcessor RP = new RequestProcessor(BrowseFolders.class.getName(), 2);
+    /** Waits for the children loaded by {@link #RP}, so it must not be RP */
+    private static final RequestProcessor EXPAND_RP = new RequestProcessor(BrowseFolders.class.getName() + ".expand"); // NOI18N
+    /** milliseconds to wait for further input before searching */
+    private static final int FILTER_DELAY = 200;
+    /** the number of matching folders expanded in the tree */
+    private static final int MAX_MATCHES = 20;
+
+    private final FolderPathIndex pathIndex;
+    private final ChangeListener pathIndexListener;
+    private final RequestProcessor.Task filterTask;
+    /** the text searched for, changed in the EDT only */
+    private volatile String filterText = ""; // NOI18N
+    /** the paths expanded for the current filter text, accessed by filterTask only */
+    private final Set<String> expandedMatches = new HashSet<String>();
+    private String expandedText = ""; // NOI18N
+    /** the nodes expanded for the matches of the current filter text, accessed in the EDT only */
+    private final List<Node> matchExpandedNodes = new ArrayList<Node>();
     
     /** Creates new form BrowseFolders */
     public BrowseFolders( SourceGroup[] folders, Project project, String preselectedFileName ) {
@@ -96,7 +128,7 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
         manager.setRootContext( rootNode );
         
         // Create the templates view
-        btv = new BeanTreeView();
+        btv = new RetainingTreeView();
         btv.setRootVisible( false );
         btv.setSelectionMode( javax.swing.tree.TreeSelectionModel.SINGLE_TREE_SELECTION );
         btv.setBorder( SAMPLE_SCROLL_PANE.getBorder() );        
@@ -106,6 +138,107 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
         expandSelection( preselectedFileName );
         //expandAllNodes( btv, manager.getRootContext() );
         folderPanel.add( btv, java.awt.BorderLayout.CENTER );        
+        
+        // The folders are indexed as soon as the user starts searching
+        pathIndex = FolderPathIndex.create( folders );
+        filterTask = EXPAND_RP.create( new Runnable() {
+            @Override
+            public void run() {
+                expandMatches();
+            }
+        });
+        pathIndexListener = new ChangeListener() {
+            @Override
+            public void stateChanged( ChangeEvent e ) {
+                // more folders are known, which may match
+                if ( filterText.length() > 0 ) {
+                    filterTask.schedule( FILTER_DELAY );
+                }
+            }
+        };
+        pathIndex.addChangeListener( pathIndexListener );
+        filterField.getDocument().addDocumentListener( new DocumentListener() {
+            @Override
+            public void insertUpdate( DocumentEvent e ) {
+                filterChanged();
+            }
+
+            @Override
+            public void removeUpdate( DocumentEvent e ) {
+                filterChanged();
+            }
+
+            @Override
+            public void changedUpdate( DocumentEvent e ) {
+                filterChanged();
+            }
+        });
+    }
+    
+    private void filterChanged() {
+        filterText = filterField.getText().trim();
+        if ( filterText.length() > 0 ) {
+            pathIndex.start();
+            filterTask.schedule( FILTER_DELAY );
+        }
+    }
+    
+    /**
+     * Expands the folders matching the filter text, as far as they are
+     * indexed already, and selects the best match. Only the children of the
+     * folders on the path to a match are loaded.
+     */
+    private void expandMatches() {
+        String text = filterText;
+        if ( !text.equals( expandedText ) ) {
+            expandedText = text;
+            expandedMatches.clear();
+            EventQueue.invokeLater( new Runnable() {
+                @Override
+                public void run() {
+                    collapseMatches();
+                }
+            });
+        }
+        if ( text.length() == 0 ) {
+            return;
+        }
+        Node[] groupNodes = manager.getRootContext().getChildren().getNodes( true );
+        boolean select = expandedMatches.isEmpty();
+        for ( FolderPathIndex.Match match : pathIndex.find( text, MAX_MATCHES ) ) {
+            if ( !text.equals( filterText ) ) {
+                // the user typed on, the next run will search again
+                return;
+            }
+            if ( match.group >= groupNodes.length
+                    || !expandedMatches.add( match.group + ":" + match.path ) ) { // NOI18N
+                continue;
+            }
+            List<String> path = Arrays.asList( match.path.split( "/" ) ); // NOI18N
+            if ( expandPath( groupNodes[ match.group ], path, select, matchExpandedNodes ) ) {
+                select = false;
+            }
+        }
+    }
+
+    /**
+     * Collapses the folders expanded for the matches of an earlier filter
+     * text, deepest first, so that the tree does not keep growing while
+     * the user types. Folders which were expanded before are left alone.
+     */
+    private void collapseMatches() {
+        for ( int i = matchExpandedNodes.size() - 1; i >= 0; i-- ) {
+            btv.collapseNode( matchExpandedNodes.get( i ) );
+        }
+        matchExpandedNodes.clear();
+    }
+
+    /**
+     * Stops indexing the folders once the dialog is closed.
+     */
+    private void closed() {
+        pathIndex.removeChangeListener( pathIndexListener );
+        pathIndex.cancel();
     }
         
     // ExplorerManager.Provider implementation ---------------------------------
@@ -125,12 +258,28 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
     private void initComponents() {
         java.awt.GridBagConstraints gridBagConstraints;
 
+        filterLabel = new javax.swing.JLabel();
+        filterField = new javax.swing.JTextField();
         jLabel1 = new javax.swing.JLabel();
         folderPanel = new javax.swing.JPanel();
 
         setBorder(javax.swing.BorderFactory.createEmptyBorder(12, 12, 12, 12));
         setLayout(new java.awt.GridBagLayout());
 
+        filterLabel.setLabelFor(filterField);
+        org.openide.awt.Mnemonics.setLocalizedText(filterLabel, org.openide.util.NbBundle.getMessage(BrowseFolders.class, "LBL_BrowseFolders_Filter")); // NOI18N
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(0, 0, 6, 6);
+        add(filterLabel, gridBagConstraints);
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridwidth = java.awt.GridBagConstraints.REMAINDER;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        gridBagConstraints.weightx = 1.0;
+        gridBagConstraints.insets = new java.awt.Insets(0, 0, 6, 0);
+        add(filterField, gridBagConstraints);
+        filterField.getAccessibleContext().setAccessibleName(org.openide.util.NbBundle.getMessage(BrowseFolders.class, "ACSN_BrowseFolders_Filter")); // NOI18N
+
         jLabel1.setLabelFor(folderPanel);
         org.openide.awt.Mnemonics.setLocalizedText(jLabel1, org.openide.util.NbBundle.getMessage(BrowseFolders.class, "LBL_BrowseFolders_jLabel1")); // NOI18N
         gridBagConstraints = new java.awt.GridBagConstraints();
@@ -155,12 +304,16 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
     
     
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JTextField filterField;
+    private javax.swing.JLabel filterLabel;
     private javax.swing.JPanel folderPanel;
     private javax.swing.JLabel jLabel1;
     // End of variables declaration//GEN-END:variables
         
     public static FileObject showDialog( SourceGroup[] folders, Project project, String preselectedFileName ) {
         
+        // Measures until the dialog is shown, not the time the user needs
+        WizardMetrics.Measurement m = WizardMetrics.start( WizardMetrics.SHOW_DIALOG );
         BrowseFolders bf = new BrowseFolders( folders, project, preselectedFileName );
         
         JButton options[] = new JButton[] { 
@@ -193,6 +346,7 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
         dialogDescriptor.setClosingOptions( new Object[] { options[ 0 ], options[ 1 ] } );
             
         Dialog dialog = DialogDisplayer.getDefault().createDialog( dialogDescriptor );
+        m.stop();
 
         try {
             dialog.setVisible(true);
@@ -202,6 +356,7 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
             }
         } finally {
             dialog.dispose();
+            bf.closed();
         }
         
         return optionsListener.getResult();
@@ -214,46 +369,123 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
         if ( ch == Children.LEAF ) {
             return;
         }
-        Node nodes[] = ch.getNodes( true );
+        // Only the source groups, their children are read lazily
+        final Node nodes[] = ch.getNodes( true );
         
-        Node sel = null;        
+        btv.expandNode( root );
+        if ( nodes.length > 0 ) {
+            selectNode( nodes[0] );
+        }
         
-        if ( preselectedFileName != null && preselectedFileName.length() > 0 ) {
-             // Try to find the node
-             for ( int i = 0; i < nodes.length; i++ ) {            
-                try { 
-                    sel = NodeOp.findPath(nodes[i], NbCollections.checkedEnumerationByFilter(new StringTokenizer(preselectedFileName, "/"), String.class, true)); // NOI18N
-                    break;
-                }
-                catch ( NodeNotFoundException e ) {            
-                    System.out.println( e.getMissingChildName() );
-                    // Will select the first node
-                }
-             }
-        }
-                        
-        if ( sel == null ) {
-            // Node not found => expand first level
-            btv.expandNode( root );
-            for ( int i = 0; i < nodes.length; i++ ) {            
-                btv.expandNode( nodes[i] );
-                if ( i == 0 ) {
-                    sel = nodes[i];
-                }
-            }
+        if ( preselectedFileName == null || preselectedFileName.length() == 0 ) {
+            expandGroups( nodes );
+            return;
         }
         
+        final List<String> path = new ArrayList<String>();
+        StringTokenizer tok = new StringTokenizer( preselectedFileName, "/" ); // NOI18N
+        while ( tok.hasMoreTokens() ) {
+            path.add( tok.nextToken() );
+        }
         
-        if ( sel != null ) {
-            // Select the node
-            try {
-                manager.setSelectedNodes( new Node[] { sel } );
+        // Walk down to the preselected folder in the background, so that
+        // the dialog does not wait for the children of each level
+        EXPAND_RP.post( new Runnable() {
+            @Override
+            public void run() {
+                for ( int i = 0; i < nodes.length; i++ ) {
+                    if ( containsPath( nodes[i], path ) && expandPath( nodes[i], path, true, null ) ) {
+                        return;
+                    }
+                }
+                // Node not found => expand first level
+                EventQueue.invokeLater( new Runnable() {
+                    @Override
+                    public void run() {
+                        expandGroups( nodes );
+                    }
+                });
             }
-            catch ( PropertyVetoException e ) {
-                // No selection for some reason
+        });
+                
+    }
+    
+    private void expandGroups( Node[] nodes ) {
+        for ( int i = 0; i < nodes.length; i++ ) {            
+            btv.expandNode( nodes[i] );
+        }
+    }
+    
+    private static boolean containsPath( Node groupNode, List<String> path ) {
+        DataObject dobj = groupNode.getLookup().lookup( DataObject.class );
+        if ( dobj == null ) {
+            return false;
+        }
+        StringBuilder sb = new StringBuilder();
+        for ( String segment : path ) {
+            if ( sb.length() > 0 ) {
+                sb.append( '/' ); // NOI18N
             }
+            sb.append( segment );
+        }
+        WizardMetrics.countFileSystemCall();
+        FileObject fo = dobj.getPrimaryFile().getFileObject( sb.toString() );
+        return fo != null && fo.isFolder();
+    }
+    
+    /**
+     * Resolves the path one level after the other, expanding every level
+     * in the tree as soon as its children are known. Must not be called
+     * from the event dispatch thread.
+     *
+     * @param select whether to select the node of the path
+     * @param expanded receives the nodes which were collapsed before and
+     * are expanded now, in the EDT; may be null
+     * @return false if some level of the path could not be found
+     */
+    private boolean expandPath( Node node, List<String> path, boolean select, final List<Node> expanded ) {
+        Node current = node;
+        for ( String segment : path ) {
+            if ( !( current.getChildren() instanceof SourceGroupChildren ) ) {
+                return false;
+            }
+            Node child = ( (SourceGroupChildren) current.getChildren() ).findLoadedChild( segment );
+            if ( child == null ) {
+                return false;
+            }
+            final Node parent = current;
+            EventQueue.invokeLater( new Runnable() {
+                @Override
+                public void run() {
+                    if ( expanded != null && !btv.isExpanded( parent ) ) {
+                        expanded.add( parent );
+                    }
+                    btv.expandNode( parent );
+                }
+            });
+            current = child;
+        }
+        if ( !select ) {
+            return true;
+        }
+        final Node sel = current;
+        EventQueue.invokeLater( new Runnable() {
+            @Override
+            public void run() {
+                selectNode( sel );
+            }
+        });
+        return true;
+    }
+    
+    private void selectNode( Node sel ) {
+        // Select the node
+        try {
+            manager.setSelectedNodes( new Node[] { sel } );
+        }
+        catch ( PropertyVetoException e ) {
+            // No selection for some reason
         }
-                
     }
     
     
@@ -312,10 +544,20 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
 
     }
 
-    private static final class SourceGroupChildren extends Children.Keys<FileObject> {
+    /**
+     * Reads the subfolders in the background and shows a wait node until
+     * they are known.
+     */
+    static final class SourceGroupChildren extends Children.Keys<Object> {
+
+        private static final Object WAIT_KEY = new Object();
 
         private final SourceGroup group;
         private final FileObject fo;
+        /** incremented whenever a scheduled load becomes obsolete */
+        private volatile int generation;
+        private volatile RequestProcessor.Task loading;
+        private volatile boolean released;
 
         public SourceGroupChildren(FileObject fo, SourceGroup group) {
             assert fo != null;
@@ -327,39 +569,222 @@ public class BrowseFolders extends javax.swing.JPanel implements ExplorerManager
         @Override
         protected void addNotify() {
             super.addNotify();
-            List<FileObject> l = new ArrayList<FileObject>();
-            for (FileObject f : fo.getChildren()) {
-                if (f.isFolder() && /*group.contains(f) &&*/ VisibilityQuery.getDefault().isVisible(f)) {
-                    l.add(f);
-                }
-            }
-            Collections.sort(l, new Comparator<FileObject>() { // #116545
-                Collator COLL = Collator.getInstance();
+            load();
+        }
+
+        private void load() {
+            setKeys(new Object[] { WAIT_KEY });
+            final int gen = ++generation;
+            loading = RP.post(new Runnable() {
                 @Override
-                public int compare(FileObject f1, FileObject f2) {
-                    return COLL.compare(f1.getNameExt(), f2.getNameExt());
+                public void run() {
+                    if (gen != generation) {
+                        return;
+                    }
+                    List<FileObject> l = getSubfolders();
+                    if (gen == generation) {
+                        setKeys(l);
+                    }
                 }
             });
-            setKeys(l);
+        }
+
+        /**
+         * Finds the child node of the given name, waiting until the children
+         * are read. Must not be called from the event dispatch thread.
+         */
+        Node findLoadedChild(String name) {
+            reloadIfReleased();
+            getNodes(); // starts loading
+            RequestProcessor.Task task = loading;
+            if (task != null) {
+                task.waitFinished();
+            }
+            return findChild(name);
+        }
+
+        private List<FileObject> getSubfolders() {
+            WizardMetrics.countFileSystemCall();
+            List<CollatedFolder> sorted = new ArrayList<CollatedFolder>();
+            for (FileObject f : fo.getChildren()) {
+                if (f.isFolder() && /*group.contains(f) &&*/ PhysicalView.VisibilityQueryDataFilter.getDefault().isVisible(f)) {
+                    sorted.add(new CollatedFolder(f));
+                }
+            }
+            Collections.sort(sorted); // #116545
+            List<FileObject> l = new ArrayList<FileObject>(sorted.size());
+            for (CollatedFolder f : sorted) {
+                l.add(f.folder);
+            }
+            return l;
+        }
+
+        /**
+         * @return the folder node these are the children of
+         */
+        Node getFolderNode() {
+            return getNode();
+        }
+
+        /**
+         * Drops the nodes of the subfolders, together with their whole
+         * subtrees. They are read again by {@link #reloadIfReleased}.
+         */
+        void release() {
+            released = true;
+            generation++;
+            setKeys(Collections.<Object>emptySet());
+        }
+
+        void reloadIfReleased() {
+            if (released) {
+                released = false;
+                load();
+            }
         }
 
         @Override
         protected void removeNotify() {
-            setKeys(Collections.<FileObject>emptySet());
+            generation++;
+            setKeys(Collections.<Object>emptySet());
             super.removeNotify();
         }
 
         @Override
-        protected Node[] createNodes(FileObject folder) {
+        protected Node[] createNodes(Object key) {
+            if (key == WAIT_KEY) {
+                return new Node[] { createWaitNode() };
+            }
+            FileObject folder = (FileObject) key;
             FilterNode fn = new FilterNode(
                     DataFolder.findFolder(folder).getNodeDelegate(),
                     new SourceGroupChildren(folder, group));
             return new Node[] { fn };
         }
 
+        private static Node createWaitNode() {
+            AbstractNode n = new AbstractNode(Children.LEAF);
+            n.setName(NbBundle.getMessage(BrowseFolders.class, "LBL_BrowseFolders_Wait")); // NOI18N
+            n.setIconBaseWithExtension("org/openide/nodes/wait.gif"); // NOI18N
+            return n;
+        }
+
     }
 
     
+    /**
+     * Releases the children of collapsed folders once more than
+     * {@link #MAX_COLLAPSED} folders are collapsed, least recently collapsed
+     * first. Otherwise the dialog would keep the nodes of every folder that
+     * was ever expanded. Released children are read again when their folder
+     * is expanded. Folders containing a selected node are kept, so that the
+     * selection stays valid.
+     */
+    private static final class RetainingTreeView extends BeanTreeView implements TreeWillExpandListener {
+
+        private static final int MAX_COLLAPSED = 32;
+
+        /** accessed in the EDT only */
+        private final Map<SourceGroupChildren, Boolean> collapsed =
+                new LinkedHashMap<SourceGroupChildren, Boolean>(MAX_COLLAPSED * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SourceGroupChildren, Boolean> eldest) {
+                if (size() > MAX_COLLAPSED) {
+                    releaseEldestUnselected();
+                }
+                // the map was modified directly
+                return false;
+            }
+        };
+
+        RetainingTreeView() {
+            tree.addTreeWillExpandListener(this);
+        }
+
+        @Override
+        public void treeWillExpand(TreeExpansionEvent event) {
+            SourceGroupChildren children = findChildren(event.getPath());
+            if (children != null) {
+                collapsed.remove(children);
+                children.reloadIfReleased();
+            }
+        }
+
+        @Override
+        public void treeWillCollapse(TreeExpansionEvent event) {
+            SourceGroupChildren children = findChildren(event.getPath());
+            if (children != null) {
+                collapsed.put(children, Boolean.TRUE);
+            }
+        }
+
+        /**
+         * Releases the least recently collapsed folder that does not
+         * contain a selected node, if any.
+         */
+        private void releaseEldestUnselected() {
+            Node[] selection = ExplorerManager.find(this).getSelectedNodes();
+            for (Iterator<SourceGroupChildren> it = collapsed.keySet().iterator(); it.hasNext();) {
+                SourceGroupChildren children = it.next();
+                if (!containsAny(children.getFolderNode(), selection)) {
+                    it.remove();
+                    children.release();
+                    return;
+                }
+            }
+        }
+
+        private static boolean containsAny(Node folder, Node[] nodes) {
+            for (Node n : nodes) {
+                for (Node parent = n.getParentNode(); parent != null; parent = parent.getParentNode()) {
+                    if (parent == folder) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static SourceGroupChildren findChildren(TreePath path) {
+            Node node = Visualizer.findNode(path.getLastPathComponent());
+            Children children = node == null ? null : node.getChildren();
+            return children instanceof SourceGroupChildren ? (SourceGroupChildren) children : null;
+        }
+    }
+
+    /**
+     * A folder together with the collation key of its name. The keys are
+     * cached per folder, so sorting compares precomputed keys instead of
+     * running the collator for each comparison, also when a folder is
+     * expanded again.
+     */
+    static final class CollatedFolder implements Comparable<CollatedFolder> {
+
+        private static final Collator COLLATOR = Collator.getInstance();
+        private static final Map<FileObject, CollationKey> KEYS =
+                Collections.synchronizedMap(new WeakHashMap<FileObject, CollationKey>());
+
+        final FileObject folder;
+        private final CollationKey key;
+
+        CollatedFolder(FileObject folder) {
+            this.folder = folder;
+            String nameExt = folder.getNameExt();
+            CollationKey k = KEYS.get(folder);
+            if (k == null || !k.getSourceString().equals(nameExt)) {
+                // new or renamed folder
+                k = COLLATOR.getCollationKey(nameExt);
+                KEYS.put(folder, k);
+            }
+            this.key = k;
+        }
+
+        @Override
+        public int compareTo(CollatedFolder o) {
+            return key.compareTo(o.key);
+        }
+    }
+
     private static final class OptionsListener implements ActionListener {
     
         public static final String COMMAND_SELECT = "SELECT"; // NOI18N
@@ -0,0 +1,173 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import org.openide.filesystems.FileAttributeEvent;
+import org.openide.filesystems.FileChangeListener;
+import org.openide.filesystems.FileEvent;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
+
+/**
+ * Caches the names of the files in a folder, so that looking for a free
+ * file name does not need a filesystem lookup per candidate. The names are
+ * read in one pass over the folder's children and read again after the
+ * folder changed.
+ */
+final class FolderNameIndex {
+
+    private static final Map<FileObject, FolderNameIndex> INDEXES = new WeakHashMap<FileObject, FolderNameIndex>();
+
+    /** names with extension of all children, null if they need to be read */
+    private Set<String> names;
+
+    private FolderNameIndex() {
+    }
+
+    private static FolderNameIndex get(FileObject folder) {
+        synchronized (INDEXES) {
+            FolderNameIndex index = INDEXES.get(folder);
+            if (index == null) {
+                index = new FolderNameIndex();
+                // the listener must not reference the folder, it is the key
+                folder.addFileChangeListener(index.new Refresher());
+                INDEXES.put(folder, index);
+            }
+            return index;
+        }
+    }
+
+    private synchronized Set<String> getNames(FileObject folder) {
+        if (names == null) {
+            WizardMetrics.countFileSystemCall();
+            FileObject[] children = folder.getChildren();
+            Set<String> s = new HashSet<String>(children.length * 4 / 3 + 1);
+            for (FileObject child : children) {
+                s.add(child.getNameExt());
+            }
+            names = s;
+        }
+        return names;
+    }
+
+    private synchronized void refresh() {
+        names = null;
+    }
+
+    /**
+     * Checks whether {@code folder} contains a file {@code name.ext}.
+     */
+    static boolean exists(FileObject folder, String name, String ext) {
+        return get(folder).getNames(folder).contains(name + '.' + ext); // NOI18N
+    }
+
+    /**
+     * Finds the smallest number {@code i}, such that none of the files
+     * {@code prefix + i + '.' + ext} exists in {@code folder}. Zero is
+     * represented by the empty string.
+     *
+     * @return the empty string or the number to append to {@code prefix}
+     */
+    static String generateUniqueSuffix(FileObject folder, String prefix, String... extensions) {
+        Set<String> exts = new HashSet<String>();
+        for (String ext : extensions) {
+            exts.add(ext);
+        }
+
+        Set<String> names = get(folder).getNames(folder);
+        BitSet used = new BitSet();
+        for (String nameExt : names) {
+            int dot = nameExt.lastIndexOf('.'); // NOI18N
+            if (dot < prefix.length() || !nameExt.startsWith(prefix)
+                    || !exts.contains(nameExt.substring(dot + 1))) {
+                continue;
+            }
+            int number = parseSuffix(nameExt, prefix.length(), dot);
+            // with n names, one of the numbers 0 to n is free, larger ones
+            // would only grow the set
+            if (number >= 0 && number <= names.size()) {
+                used.set(number);
+            }
+        }
+
+        int free = used.nextClearBit(0);
+        return free == 0 ? "" : String.valueOf(free); // NOI18N
+    }
+
+    /**
+     * Parses the characters between {@code start} and {@code end} as the
+     * numeric suffix generated by {@link #generateUniqueSuffix}.
+     *
+     * @return the number, 0 for an empty suffix and -1 if it is no such number
+     */
+    private static int parseSuffix(String s, int start, int end) {
+        if (start == end) {
+            return 0;
+        }
+        // leading zeros are never generated, large numbers are never reached
+        if (s.charAt(start) == '0' || end - start > 9) { // NOI18N
+            return -1;
+        }
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') { // NOI18N
+                return -1;
+            }
+            number = number * 10 + (c - '0'); // NOI18N
+        }
+        return number;
+    }
+
+    private final class Refresher implements FileChangeListener {
+
+        @Override
+        public void fileFolderCreated(FileEvent fe) {
+            refresh();
+        }
+
+        @Override
+        public void fileDataCreated(FileEvent fe) {
+            refresh();
+        }
+
+        @Override
+        public void fileDeleted(FileEvent fe) {
+            refresh();
+        }
+
+        @Override
+        public void fileRenamed(FileRenameEvent fe) {
+            refresh();
+        }
+
+        @Override
+        public void fileChanged(FileEvent fe) {
+        }
+
+        @Override
+        public void fileAttributeChanged(FileAttributeEvent fe) {
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.event.ChangeListener;
+import org.netbeans.api.project.SourceGroup;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.ChangeSupport;
+import org.openide.util.RequestProcessor;
+
+/**
+ * The folders of some source groups, by name. The folders are read breadth
+ * first in the background and can be searched while they are read; a change
+ * is fired whenever a batch of folders was added. Names are looked up by
+ * prefix in a sorted map, and by substring in the distinct names only.
+ * Folders reached again through a symbolic link are read only once.
+ */
+final class FolderPathIndex implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(FolderPathIndex.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor(FolderPathIndex.class.getName());
+    /** number of folders read between two change events */
+    private static final int BATCH_SIZE = 1000;
+
+    private final FileObject[] roots;
+    /** lower case folder name to all folders of that name */
+    private final TreeMap<String, List<Match>> byName = new TreeMap<String, List<Match>>();
+    private final ChangeSupport changeSupport = new ChangeSupport(this);
+    private final RequestProcessor.Task task;
+    private boolean started;
+    private volatile boolean cancelled;
+
+    private FolderPathIndex(SourceGroup[] groups) {
+        roots = new FileObject[groups.length];
+        for (int i = 0; i < groups.length; i++) {
+            roots[i] = groups[i].getRootFolder();
+        }
+        task = RP.create(this);
+    }
+
+    /**
+     * Creates an index of the folders of {@code groups}, which is not read
+     * before {@link #start} is called.
+     */
+    static FolderPathIndex create(SourceGroup[] groups) {
+        return new FolderPathIndex(groups);
+    }
+
+    /**
+     * Starts reading the folders, unless it was started before.
+     */
+    synchronized void start() {
+        if (!started && !cancelled) {
+            started = true;
+            task.schedule(0);
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+        task.cancel();
+    }
+
+    void addChangeListener(ChangeListener l) {
+        changeSupport.addChangeListener(l);
+    }
+
+    void removeChangeListener(ChangeListener l) {
+        changeSupport.removeChangeListener(l);
+    }
+
+    @Override
+    public void run() {
+        PhysicalView.VisibilityQueryDataFilter filter = PhysicalView.VisibilityQueryDataFilter.getDefault();
+        Deque<Match> queue = new ArrayDeque<Match>();
+        // per group, as the folders of nested groups are found in both
+        List<Set<String>> visited = new ArrayList<Set<String>>(roots.length);
+        for (int i = 0; i < roots.length; i++) {
+            visited.add(new HashSet<String>());
+            visit(roots[i], visited.get(i));
+            queue.add(new Match(i, "", roots[i])); // NOI18N
+        }
+
+        List<Match> batch = new ArrayList<Match>(BATCH_SIZE);
+        while (!queue.isEmpty() && !cancelled) {
+            Match parent = queue.poll();
+            WizardMetrics.countFileSystemCall();
+            for (FileObject child : parent.folder.getChildren()) {
+                if (child.isFolder() && filter.isVisible(child)
+                        && visit(child, visited.get(parent.group))) {
+                    String path = parent.path.length() == 0
+                            ? child.getNameExt() : parent.path + '/' + child.getNameExt(); // NOI18N
+                    Match m = new Match(parent.group, path, child);
+                    queue.add(m);
+                    batch.add(m);
+                }
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                add(batch);
+                batch.clear();
+            }
+        }
+        add(batch);
+    }
+
+    /**
+     * Adds the canonical path of {@code folder} to {@code visited}, so that
+     * symbolic links leading back to a folder do not make a walk endless.
+     *
+     * @return false if the folder was visited before
+     */
+    static boolean visit(FileObject folder, Set<String> visited) {
+        File file = FileUtil.toFile(folder);
+        if (file == null) {
+            // only folders on disk can be linked
+            return true;
+        }
+        try {
+            return visited.add(file.getCanonicalPath());
+        } catch (IOException ex) {
+            // e.g. too many levels of symbolic links
+            LOG.log(Level.FINE, "Skipping " + file, ex); // NOI18N
+            return false;
+        }
+    }
+
+    private void add(List<Match> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (Match m : batch) {
+                String key = m.folder.getNameExt().toLowerCase(Locale.ENGLISH);
+                List<Match> l = byName.get(key);
+                if (l == null) {
+                    l = new ArrayList<Match>(1);
+                    byName.put(key, l);
+                }
+                l.add(m);
+            }
+        }
+        changeSupport.fireChange();
+    }
+
+    /**
+     * Finds the folders whose name starts with {@code text}, followed by
+     * those whose name contains it. If {@code text} contains a slash, it is
+     * matched against the path relative to the group instead. Only the
+     * folders read so far are found.
+     *
+     * @return at most {@code max} matches
+     */
+    List<Match> find(String text, int max) {
+        String lower = text.toLowerCase(Locale.ENGLISH);
+        if (lower.length() == 0) {
+            return Collections.emptyList();
+        }
+        List<Match> result = new ArrayList<Match>();
+        synchronized (this) {
+            if (lower.indexOf('/') >= 0) { // NOI18N
+                for (List<Match> l : byName.values()) {
+                    for (Match m : l) {
+                        if (m.path.toLowerCase(Locale.ENGLISH).contains(lower)) {
+                            result.add(m);
+                            if (result.size() == max) {
+                                return result;
+                            }
+                        }
+                    }
+                }
+                return result;
+            }
+
+            Map<String, List<Match>> prefixed = byName.subMap(lower, lower + Character.MAX_VALUE);
+            for (List<Match> l : prefixed.values()) {
+                if (addAll(result, l, max)) {
+                    return result;
+                }
+            }
+            for (Map.Entry<String, List<Match>> entry : byName.entrySet()) {
+                String name = entry.getKey();
+                if (!name.startsWith(lower) && name.contains(lower)) {
+                    if (addAll(result, entry.getValue(), max)) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if {@code result} is full
+     */
+    private static boolean addAll(List<Match> result, List<Match> matches, int max) {
+        for (Match m : matches) {
+            result.add(m);
+            if (result.size() == max) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A folder found in the index.
+     */
+    static final class Match {
+
+        /** index of the source group */
+        final int group;
+        /** path relative to the root of the group, separated by slashes */
+        final String path;
+        final FileObject folder;
+
+        Match(int group, String path, FileObject folder) {
+            this.group = group;
+            this.path = path;
+            this.folder = folder;
+        }
+    }
+}
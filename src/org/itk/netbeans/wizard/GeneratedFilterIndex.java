@@ -0,0 +1,402 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectUtils;
+import org.netbeans.api.project.SourceGroup;
+import org.netbeans.api.queries.FileEncodingQuery;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.URLMapper;
+import org.openide.util.RequestProcessor;
+
+/**
+ * The ITK filters generated in a project, by class name. The index is kept
+ * in the project's cache directory, so that looking up a filter does not
+ * walk the source tree. If there is no stored index yet, it is built once
+ * by scanning the headers of all source groups; afterwards it is updated
+ * with every generated filter. Without a cache directory, the index is only
+ * kept in memory. A filter found by scanning may have been written by hand,
+ * and its loop style and padding radius are not known, so it is marked as
+ * {@linkplain Entry#scanned scanned} and only regenerated on request.
+ */
+final class GeneratedFilterIndex implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(GeneratedFilterIndex.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor(GeneratedFilterIndex.class.getName());
+    private static final Map<Project, GeneratedFilterIndex> INDEXES = new WeakHashMap<Project, GeneratedFilterIndex>();
+
+    private static final String INDEX_FILE = "generated-filters.properties"; // NOI18N
+    private static final char SEPARATOR = '\t'; // NOI18N
+    private static final int STORE_DELAY = 1000;
+    /** headers larger than this are not generated by the wizard */
+    private static final long MAX_HEADER_SIZE = 64 * 1024;
+    /** the class declaration in {@code ImageFilter.h} */
+    private static final Pattern CLASS_DECLARATION = Pattern.compile(
+            "class\\s+ITK_EXPORT\\s+(\\w+)\\s*:\\s*public\\s+(\\w+)\\s*<"); // NOI18N
+    private static final String DYNAMIC_THREADED_METHOD = "DynamicThreadedGenerateData("; // NOI18N
+    private static final String THREADED_METHOD = "ThreadedGenerateData("; // NOI18N
+    private static final String STREAMING_METHOD = "GenerateInputRequestedRegion("; // NOI18N
+
+    /** the index must not keep its project, which is the key */
+    private final Reference<Project> project;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final RequestProcessor.Task loadTask;
+    private final RequestProcessor.Task storeTask;
+
+    private GeneratedFilterIndex(Project project) {
+        this.project = new WeakReference<Project>(project);
+        this.loadTask = RP.post(this);
+        this.storeTask = RP.create(new Runnable() {
+            @Override
+            public void run() {
+                store();
+            }
+        });
+    }
+
+    static GeneratedFilterIndex forProject(Project project) {
+        synchronized (INDEXES) {
+            GeneratedFilterIndex index = INDEXES.get(project);
+            if (index == null) {
+                index = new GeneratedFilterIndex(project);
+                INDEXES.put(project, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Adds a filter to the index of the project owning its target folder.
+     */
+    static void filterGenerated(ItkFilterSpec spec) {
+        Project owner = FileOwnerQuery.getOwner(spec.getTargetFolder());
+        if (owner != null) {
+            forProject(owner).add(spec);
+        }
+    }
+
+    /**
+     * Returns the filter called {@code className}, waiting for the index
+     * to be loaded. Filters whose header was removed are dropped.
+     *
+     * @return the filter or null if there is none
+     */
+    Entry get(String className) {
+        loadTask.waitFinished();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(className);
+        }
+        if (entry != null && entry.getHeader() == null) {
+            remove(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns all indexed filters, waiting for the index to be loaded.
+     * Filters whose header was removed are dropped.
+     */
+    Collection<Entry> getEntries() {
+        loadTask.waitFinished();
+        List<Entry> result;
+        synchronized (this) {
+            result = new ArrayList<Entry>(entries.values());
+        }
+        for (Iterator<Entry> it = result.iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.getHeader() == null) {
+                remove(entry);
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    void add(ItkFilterSpec spec) {
+        Entry entry = new Entry(spec.getClassName(), spec.getTargetFolder().toURL().toString(),
+                spec.getParentClassName(), spec.getThreadingModel(), spec.getLoopStyle(),
+                spec.isStreaming(), spec.getRadius(), false);
+        synchronized (this) {
+            entries.put(entry.className, entry);
+        }
+        storeTask.schedule(STORE_DELAY);
+    }
+
+    private void remove(Entry entry) {
+        synchronized (this) {
+            if (entries.get(entry.className) != entry) {
+                return;
+            }
+            entries.remove(entry.className);
+        }
+        storeTask.schedule(STORE_DELAY);
+    }
+
+    /**
+     * Loads the stored index, or scans the project if there is none.
+     */
+    @Override
+    public void run() {
+        Project p = project.get();
+        if (p == null) {
+            return;
+        }
+        Map<String, Entry> loaded = new HashMap<String, Entry>();
+        FileObject indexFile = getIndexFile(p, false);
+        if (indexFile != null) {
+            load(indexFile, loaded);
+        } else {
+            Set<String> visited = new HashSet<String>();
+            for (SourceGroup group : SourceGroupIndex.forProject(p).getGroups()) {
+                FileObject root = group.getRootFolder();
+                // nested groups are scanned once
+                if (FolderPathIndex.visit(root, visited)) {
+                    scan(root, loaded, visited);
+                }
+            }
+            storeTask.schedule(0);
+        }
+        synchronized (this) {
+            // filters generated while loading are newer
+            loaded.putAll(entries);
+            entries.clear();
+            entries.putAll(loaded);
+        }
+    }
+
+    private static void load(FileObject indexFile, Map<String, Entry> loaded) {
+        Properties props = new Properties();
+        try {
+            WizardMetrics.countFileSystemCall();
+            InputStream in = indexFile.getInputStream();
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Cannot read " + indexFile, ex); // NOI18N
+            return;
+        }
+        for (String className : props.stringPropertyNames()) {
+            String[] values = props.getProperty(className).split(String.valueOf(SEPARATOR));
+            // indexes written by older versions have fewer values and do not
+            // tell generated from scanned filters
+            if (values.length == 3 || values.length == 4 || values.length == 6 || values.length == 7) {
+                try {
+                    int radius = values.length > 5 ? Integer.parseInt(values[5]) : 0;
+                    if (radius < 0) {
+                        throw new IllegalArgumentException("Negative radius " + radius); // NOI18N
+                    }
+                    loaded.put(className, new Entry(className, values[0], values[1],
+                            ThreadingModel.parse(values[2]),
+                            values.length > 3 ? LoopStyle.parse(values[3]) : LoopStyle.REGION,
+                            values.length > 4 && Boolean.parseBoolean(values[4]), radius,
+                            values.length < 7 || Boolean.parseBoolean(values[6])));
+                } catch (IllegalArgumentException ex) {
+                    LOG.log(Level.FINE, "Ignoring " + className, ex); // NOI18N
+                }
+            }
+        }
+    }
+
+    private static void scan(FileObject folder, Map<String, Entry> found, Set<String> visited) {
+        PhysicalView.VisibilityQueryDataFilter filter = PhysicalView.VisibilityQueryDataFilter.getDefault();
+        WizardMetrics.countFileSystemCall();
+        for (FileObject child : folder.getChildren()) {
+            if (!filter.isVisible(child)) {
+                continue;
+            }
+            if (child.isFolder()) {
+                // symbolic links may lead back to a scanned folder
+                if (FolderPathIndex.visit(child, visited)) {
+                    scan(child, found, visited);
+                }
+            } else if (NewItkFilterVisualPanel1.headerExt.equals(child.getExt())
+                    && child.getSize() <= MAX_HEADER_SIZE) {
+                Entry entry = parseHeader(child);
+                if (entry != null) {
+                    found.put(entry.className, entry);
+                }
+            }
+        }
+    }
+
+    private static Entry parseHeader(FileObject header) {
+        String text;
+        try {
+            WizardMetrics.countFileSystemCall();
+            text = header.asText(FileEncodingQuery.getEncoding(header).name());
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Cannot read " + header, ex); // NOI18N
+            return null;
+        }
+        Matcher m = CLASS_DECLARATION.matcher(text);
+        // the file is named after the class
+        if (!m.find() || !m.group(1).equals(header.getName())) {
+            return null;
+        }
+        ThreadingModel threading = text.contains(DYNAMIC_THREADED_METHOD) ? ThreadingModel.DYNAMIC
+                : text.contains(THREADED_METHOD) ? ThreadingModel.CLASSIC : ThreadingModel.SINGLE;
+        return new Entry(m.group(1), header.getParent().toURL().toString(), m.group(2), threading,
+                LoopStyle.REGION, text.contains(STREAMING_METHOD), 0, true);
+    }
+
+    private void store() {
+        Project p = project.get();
+        if (p == null) {
+            return;
+        }
+        Properties props = new Properties();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                props.setProperty(entry.className, entry.folder + SEPARATOR
+                        + entry.parentClassName + SEPARATOR + entry.threading.getId()
+                        + SEPARATOR + entry.loopStyle.getId()
+                        + SEPARATOR + entry.streaming + SEPARATOR + entry.radius
+                        + SEPARATOR + entry.scanned);
+            }
+        }
+        FileObject indexFile = getIndexFile(p, true);
+        if (indexFile == null) {
+            return;
+        }
+        try {
+            OutputStream out = indexFile.getOutputStream();
+            try {
+                props.store(out, null);
+            } finally {
+                out.close();
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.INFO, "Cannot write " + indexFile, ex); // NOI18N
+        }
+    }
+
+    /**
+     * @return the index file or null if it does not exist and should not be
+     * created, or if the project has no cache directory
+     */
+    private static FileObject getIndexFile(Project p, boolean create) {
+        try {
+            FileObject cacheDir = ProjectUtils.getCacheDirectory(p, GeneratedFilterIndex.class);
+            WizardMetrics.countFileSystemCall();
+            FileObject indexFile = cacheDir.getFileObject(INDEX_FILE);
+            if (indexFile == null && create) {
+                indexFile = cacheDir.createData(INDEX_FILE);
+            }
+            return indexFile;
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Keeping the index of " + p + " in memory", ex); // NOI18N
+            return null;
+        }
+    }
+
+    /**
+     * A generated filter, or a filter found by scanning the headers.
+     */
+    static final class Entry {
+
+        final String className;
+        /** URL of the target folder */
+        final String folder;
+        final String parentClassName;
+        final ThreadingModel threading;
+        final LoopStyle loopStyle;
+        final boolean streaming;
+        final int radius;
+        /** true if the filter was not generated by the wizard but found by scanning */
+        final boolean scanned;
+
+        Entry(String className, String folder, String parentClassName, ThreadingModel threading,
+                LoopStyle loopStyle, boolean streaming, int radius, boolean scanned) {
+            this.className = className;
+            this.folder = folder;
+            this.parentClassName = parentClassName;
+            this.threading = threading;
+            this.loopStyle = loopStyle;
+            this.streaming = streaming;
+            this.radius = radius;
+            this.scanned = scanned;
+        }
+
+        FileObject getFolder() {
+            try {
+                return URLMapper.findFileObject(new URL(folder));
+            } catch (MalformedURLException ex) {
+                return null;
+            }
+        }
+
+        FileObject getHeader() {
+            FileObject fo = getFolder();
+            return fo == null ? null : fo.getFileObject(className, NewItkFilterVisualPanel1.headerExt);
+        }
+
+        List<FileObject> getFiles() {
+            List<FileObject> files = new ArrayList<FileObject>(2);
+            FileObject fo = getFolder();
+            if (fo != null) {
+                for (String ext : new String[]{NewItkFilterVisualPanel1.headerExt, NewItkFilterVisualPanel1.sourceExt}) {
+                    FileObject file = fo.getFileObject(className, ext);
+                    if (file != null) {
+                        files.add(file);
+                    }
+                }
+            }
+            return files;
+        }
+
+        /**
+         * Returns the specification to regenerate this filter with.
+         *
+         * @return the specification or null if the folder does not exist
+         */
+        ItkFilterSpec toSpec() {
+            FileObject fo = getFolder();
+            return fo == null ? null : new ItkFilterSpec(fo, className, parentClassName, threading,
+                    loopStyle, streaming, radius);
+        }
+    }
+}
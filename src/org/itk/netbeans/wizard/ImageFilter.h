@@ -1,6 +1,7 @@
 #ifndef __itk${className}_h
 #define __itk${className}_h
 
+<#assign padded = streaming || loopStyle == "neighborhood">
 #include <itk${parentClassName}.h>
 
 namespace itk
@@ -19,6 +20,7 @@ public:
 
     /** input image typedefs */
     typedef TInputImage InputImageType;
+    typedef typename InputImageType::Pointer InputImagePointer;
     typedef typename Superclass::InputImageConstPointer InputImageConstPointer;
     typedef typename InputImageType::RegionType InputImageRegionType;
     typedef typename InputImageType::PixelType InputImagePixelType;
@@ -37,14 +39,40 @@ public:
 
     /** Method for creation through the object factory. */
     itkNewMacro(Self);
+<#if padded>
+
+<#if loopStyle == "neighborhood">
+    /** Radius of the neighborhood, the requested region of the input is padded by it. */
+<#else>
+    /** Radius by which the requested region of the input is padded. */
+</#if>
+    typedef typename InputImageType::SizeType RadiusType;
+    itkSetMacro(Radius, RadiusType);
+    itkGetConstReferenceMacro(Radius, RadiusType);
+</#if>
 
 protected:
     ${className}();
     virtual ~${className}() {};
 
     virtual void PrintSelf(std::ostream & os, Indent indent) const;
+<#if padded>
+
+    /** Requests the output region of the input, padded by the radius. */
+    virtual void GenerateInputRequestedRegion();
 
-<#if multiThreaded>
+    /** Keeps the requested region of the output, so it can be streamed. */
+    virtual void EnlargeOutputRequestedRegion(DataObject *output);
+</#if>
+
+<#if threading == "dynamic">
+#if ITK_VERSION_MAJOR >= 5
+    virtual void DynamicThreadedGenerateData(const OutputImageRegionType& outputRegion);
+#else
+    /** ITK 4 has no dynamic multi-threading, there is one region per thread. */
+    virtual void ThreadedGenerateData(const OutputImageRegionType& outputRegion, ThreadIdType threadId);
+#endif
+<#elseif threading == "classic">
     virtual void ThreadedGenerateData(const OutputImageRegionType& outputRegion, ThreadIdType threadId);
 <#else>
     virtual void GenerateData();
@@ -53,6 +81,10 @@ protected:
 private:
     ${className}(const Self &); //purposely not implemented
     void operator=(const Self &); //purposely not implemented
+<#if padded>
+
+    RadiusType m_Radius;
+</#if>
 };
 }
 
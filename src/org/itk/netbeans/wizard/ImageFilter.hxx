@@ -1,13 +1,53 @@
 #ifndef __itk${className}_hxx
 #define __itk${className}_hxx
 
+<#assign padded = streaming || loopStyle == "neighborhood">
+<#assign inPlace = parentClassName == "InPlaceImageFilter">
 #include "${className}.h"
+<#if loopStyle == "neighborhood">
+#include <itkConstNeighborhoodIterator.h>
+#include <itkImageRegionIterator.h>
+#include <itkNeighborhoodAlgorithm.h>
+#include <itkZeroFluxNeumannBoundaryCondition.h>
+<#elseif loopStyle == "scanline">
+#include <itkImageScanlineConstIterator.h>
+#include <itkImageScanlineIterator.h>
+<#elseif loopStyle == "indexed">
+#include <itkImageRegionConstIteratorWithIndex.h>
+#include <itkImageRegionIteratorWithIndex.h>
+<#else>
+#include <itkImageRegionConstIterator.h>
+#include <itkImageRegionIterator.h>
+</#if>
 
 namespace itk
 {
 template<class TInputImage, class TOutputImage>
 ${className}<TInputImage, TOutputImage>::${className}()
 {
+<#if threading == "dynamic">
+#if ITK_VERSION_MAJOR >= 5
+   this->DynamicMultiThreadingOn();
+#endif
+<#elseif threading == "classic">
+#if ITK_VERSION_MAJOR >= 5
+   // ITK 4 always calls ThreadedGenerateData()
+   this->DynamicMultiThreadingOff();
+#endif
+</#if>
+<#if inPlace>
+<#if loopStyle == "neighborhood">
+   // the neighborhoods would read pixels which were already written
+   this->InPlaceOff();
+<#else>
+   // reuse the buffer of the input for the output; this only happens if
+   // CanRunInPlace(), i.e. the input and output image types are the same
+   this->InPlaceOn();
+</#if>
+</#if>
+<#if padded>
+   m_Radius.Fill(${radius?c});
+</#if>
    //TODO: initalize values
 }
 
@@ -16,18 +56,188 @@ void
 ${className}<TInputImage, TOutputImage>::PrintSelf(std::ostream & os, Indent indent) const
 {
    Superclass::PrintSelf(os, indent);
+<#if padded>
+   os << indent << "Radius: " << m_Radius << std::endl;
+</#if>
+}
+<#if padded>
+
+template<class TInputImage, class TOutputImage>
+void
+${className}<TInputImage, TOutputImage>::GenerateInputRequestedRegion()
+{
+   // sets the requested region of the input to the one of the output
+   Superclass::GenerateInputRequestedRegion();
+
+   InputImagePointer input = const_cast<InputImageType *>(this->GetInput());
+   if (!input)
+   {
+      return;
+   }
+
+   InputImageRegionType inputRequestedRegion = input->GetRequestedRegion();
+   inputRequestedRegion.PadByRadius(m_Radius);
+
+   if (inputRequestedRegion.Crop(input->GetLargestPossibleRegion()))
+   {
+      input->SetRequestedRegion(inputRequestedRegion);
+      return;
+   }
+
+   // the requested region is outside the largest possible region, store
+   // what was requested for the error message
+   input->SetRequestedRegion(inputRequestedRegion);
+
+   InvalidRequestedRegionError e(__FILE__, __LINE__);
+   e.SetLocation(ITK_LOCATION);
+   e.SetDescription("Requested region is (at least partially) outside the largest possible region.");
+   e.SetDataObject(input);
+   throw e;
 }
 
 template<class TInputImage, class TOutputImage>
 void
-<#if multiThreaded>
+${className}<TInputImage, TOutputImage>::EnlargeOutputRequestedRegion(DataObject *output)
+{
+   // Any part of the output can be computed from the padded input region,
+   // so the requested region is not enlarged and the pipeline may stream.
+   // Call output->SetRequestedRegionToLargestPossibleRegion() instead if
+   // the whole output has to be produced at once.
+   Superclass::EnlargeOutputRequestedRegion(output);
+}
+</#if>
+
+template<class TInputImage, class TOutputImage>
+void
+<#if threading == "dynamic">
+#if ITK_VERSION_MAJOR >= 5
+${className}<TInputImage, TOutputImage>::DynamicThreadedGenerateData(const OutputImageRegionType& outputRegion)
+#else
+${className}<TInputImage, TOutputImage>::ThreadedGenerateData(const OutputImageRegionType& outputRegion, ThreadIdType itkNotUsed(threadId))
+#endif
+<#elseif threading == "classic">
 ${className}<TInputImage, TOutputImage>::ThreadedGenerateData(const OutputImageRegionType& outputRegion, ThreadIdType threadId)
 <#else>
 ${className}<TInputImage, TOutputImage>::GenerateData()
 </#if>
 {
+<#if threading == "single">
+<#if inPlace>
+   // grafts the input onto the output when running in place
+</#if>
+   this->AllocateOutputs();
+
+</#if>
    InputImageConstPointer input = this->GetInput();
    OutputImagePointer output = this->GetOutput();
+<#if threading == "single">
+   const OutputImageRegionType outputRegion = output->GetRequestedRegion();
+</#if>
+
+<#if inPlace && loopStyle != "neighborhood">
+   if (this->GetRunningInPlace())
+   {
+      // the output uses the buffer of the input, so each pixel is read
+      // and written through the same iterator
+<#if loopStyle == "scanline">
+      ImageScanlineIterator<OutputImageType> it(output, outputRegion);
+      while (!it.IsAtEnd())
+      {
+         while (!it.IsAtEndOfLine())
+         {
+            //TODO: compute the output pixel
+            it.Set(it.Get());
+            ++it;
+         }
+         it.NextLine();
+      }
+<#elseif loopStyle == "indexed">
+      ImageRegionIteratorWithIndex<OutputImageType> it(output, outputRegion);
+      for (it.GoToBegin(); !it.IsAtEnd(); ++it)
+      {
+         const typename OutputImageType::IndexType index = it.GetIndex();
+         (void)index; // avoids an unused variable warning until index is used
+         //TODO: compute the output pixel at index
+         it.Set(it.Get());
+      }
+<#else>
+      ImageRegionIterator<OutputImageType> it(output, outputRegion);
+      for (it.GoToBegin(); !it.IsAtEnd(); ++it)
+      {
+         //TODO: compute the output pixel
+         it.Set(it.Get());
+      }
+</#if>
+      return;
+   }
+
+   // not running in place, the output has a buffer of its own
+</#if>
+   InputImageRegionType inputRegion;
+   this->CallCopyOutputRegionToInputRegion(inputRegion, outputRegion);
+
+<#if loopStyle == "neighborhood">
+   // The faces split the region into the interior, where the whole
+   // neighborhood lies inside the input, and the pixels along the boundary.
+   typedef NeighborhoodAlgorithm::ImageBoundaryFacesCalculator<InputImageType> FaceCalculatorType;
+   FaceCalculatorType faceCalculator;
+   typename FaceCalculatorType::FaceListType faceList = faceCalculator(input, inputRegion, m_Radius);
+
+   ZeroFluxNeumannBoundaryCondition<InputImageType> boundaryCondition;
+   for (typename FaceCalculatorType::FaceListType::iterator fit = faceList.begin(); fit != faceList.end(); ++fit)
+   {
+      ConstNeighborhoodIterator<InputImageType> nit(m_Radius, input, *fit);
+      nit.OverrideBoundaryCondition(&boundaryCondition);
+      if (fit == faceList.begin())
+      {
+         // the first face is the interior, no pixel needs the boundary condition
+         nit.NeedToUseBoundaryConditionOff();
+      }
+
+      OutputImageRegionType outputFace;
+      this->CallCopyInputRegionToOutputRegion(outputFace, *fit);
+      ImageRegionIterator<OutputImageType> outIt(output, outputFace);
+
+      for (nit.GoToBegin(), outIt.GoToBegin(); !nit.IsAtEnd(); ++nit, ++outIt)
+      {
+         //TODO: compute the output pixel from the neighborhood
+         outIt.Set(static_cast<OutputImagePixelType>(nit.GetCenterPixel()));
+      }
+   }
+<#elseif loopStyle == "scanline">
+   ImageScanlineConstIterator<InputImageType> inIt(input, inputRegion);
+   ImageScanlineIterator<OutputImageType> outIt(output, outputRegion);
+   while (!outIt.IsAtEnd())
+   {
+      while (!outIt.IsAtEndOfLine())
+      {
+         //TODO: compute the output pixel
+         outIt.Set(static_cast<OutputImagePixelType>(inIt.Get()));
+         ++inIt;
+         ++outIt;
+      }
+      inIt.NextLine();
+      outIt.NextLine();
+   }
+<#elseif loopStyle == "indexed">
+   ImageRegionConstIteratorWithIndex<InputImageType> inIt(input, inputRegion);
+   ImageRegionIteratorWithIndex<OutputImageType> outIt(output, outputRegion);
+   for (inIt.GoToBegin(), outIt.GoToBegin(); !outIt.IsAtEnd(); ++inIt, ++outIt)
+   {
+      const typename OutputImageType::IndexType index = outIt.GetIndex();
+      (void)index; // avoids an unused variable warning until index is used
+      //TODO: compute the output pixel at index
+      outIt.Set(static_cast<OutputImagePixelType>(inIt.Get()));
+   }
+<#else>
+   ImageRegionConstIterator<InputImageType> inIt(input, inputRegion);
+   ImageRegionIterator<OutputImageType> outIt(output, outputRegion);
+   for (inIt.GoToBegin(), outIt.GoToBegin(); !outIt.IsAtEnd(); ++inIt, ++outIt)
+   {
+      //TODO: compute the output pixel
+      outIt.Set(static_cast<OutputImagePixelType>(inIt.Get()));
+   }
+</#if>
 }
 }
 
@@ -0,0 +1,416 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.queries.FileEncodingQuery;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileSystem;
+import org.openide.filesystems.FileUtil;
+import org.openide.loaders.DataObject;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Creates ITK filters from the {@code ImageFilter.h}/{@code ImageFilter.hxx}
+ * templates without going through a {@code WizardDescriptor}.
+ */
+public final class ItkFilterGenerator {
+
+    /** Location of the source template in the system filesystem. */
+    static final String SOURCE_TEMPLATE = "Templates/cppFiles/ImageFilter.hxx"; // NOI18N
+    private static final String HEADER_EXT = "h"; // NOI18N
+    private static final Logger LOG = Logger.getLogger(ItkFilterGenerator.class.getName());
+
+    private static final RequestProcessor RP = new RequestProcessor(
+            ItkFilterGenerator.class.getName(),
+            Runtime.getRuntime().availableProcessors());
+
+    private final FileObject sourceTemplate;
+    private final FileObject headerTemplate;
+
+    public ItkFilterGenerator(FileObject sourceTemplate) {
+        if (sourceTemplate == null) {
+            throw new NullPointerException("null sourceTemplate"); // NOI18N
+        }
+        this.sourceTemplate = sourceTemplate;
+        this.headerTemplate = FileUtil.findBrother(sourceTemplate, HEADER_EXT);
+    }
+
+    /**
+     * Returns a generator for the templates registered by this module.
+     */
+    public static ItkFilterGenerator getDefault() throws IOException {
+        FileObject template = FileUtil.getConfigFile(SOURCE_TEMPLATE);
+        if (template == null) {
+            throw new FileNotFoundException(SOURCE_TEMPLATE);
+        }
+        return new ItkFilterGenerator(template);
+    }
+
+    /**
+     * Creates the header and the source file of a single filter.
+     *
+     * @return the created data objects, header first
+     */
+    public Set<DataObject> generate(ItkFilterSpec spec) throws IOException {
+        return generate(spec, false);
+    }
+
+    /**
+     * Creates the header and the source file of a single filter, replacing
+     * existing files. Files whose content would not change are left alone,
+     * so that their time stamps do not trigger a rebuild.
+     *
+     * @return the data objects of the filter, header first
+     */
+    public Set<DataObject> regenerate(ItkFilterSpec spec) throws IOException {
+        return generate(spec, true);
+    }
+
+    private Set<DataObject> generate(ItkFilterSpec spec, boolean regenerate) throws IOException {
+        Generation generation = new Generation(spec);
+        generation.render();
+        writeAtomically(Collections.singletonList(generation), regenerate);
+        if (generation.error != null) {
+            throw generation.error;
+        }
+        return generation.getDataObjects();
+    }
+
+    /**
+     * Writes all files of the given generations in one atomic action, so
+     * that filesystem listeners and the code model see a single burst of
+     * events instead of one per file.
+     */
+    private static void writeAtomically(final List<Generation> generations,
+            final boolean regenerate) throws IOException {
+        FileUtil.runAtomicAction(new FileSystem.AtomicAction() {
+            @Override
+            public void run() throws IOException {
+                for (Generation generation : generations) {
+                    if (generation.error == null) {
+                        generation.write(regenerate);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Expands the template with the cached, already parsed FreeMarker
+     * template instead of {@link DataObject#createFromTemplate}, which would
+     * parse it on every call. Like {@code createFromTemplate}, it adds the
+     * {@code user}, {@code date}, {@code time}, {@code name},
+     * {@code nameAndExt} and {@code encoding} variables, which customized
+     * templates may use.
+     */
+    private static RenderedFile render(FileObject template,
+            ItkFilterSpec spec, Map<String, Object> specArgs, Date now) throws IOException {
+        FileObject folder = spec.getTargetFolder();
+        if (folder == null) {
+            // the folder is only created when the files are written
+            folder = spec.getBaseFolder();
+        }
+        String encoding = FileEncodingQuery.getEncoding(folder).name();
+
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("user", System.getProperty("user.name")); // NOI18N
+        args.put("date", DateFormat.getDateInstance().format(now)); // NOI18N
+        args.put("time", DateFormat.getTimeInstance().format(now)); // NOI18N
+        args.put("name", spec.getClassName()); // NOI18N
+        args.put("nameAndExt", spec.getClassName() + '.' + template.getExt()); // NOI18N
+        args.put("encoding", encoding); // NOI18N
+        args.putAll(specArgs);
+
+        Template parsed = TemplateCache.getDefault().getTemplate(template);
+        StringWriter content = new StringWriter();
+        try {
+            parsed.process(args, content);
+        } catch (TemplateException ex) {
+            throw new IOException("Cannot process " + template.getPath(), ex); // NOI18N
+        }
+
+        byte[] data = content.toString().getBytes(encoding);
+        return new RenderedFile(template.getExt(), data);
+    }
+
+    /**
+     * Compares the content hash of a file with the one of {@code data}.
+     */
+    private static boolean hasContent(FileObject fo, byte[] data) throws IOException {
+        if (fo.getSize() != data.length) {
+            return false;
+        }
+        MessageDigest fileDigest = createDigest();
+        WizardMetrics.countFileSystemCall();
+        InputStream in = fo.getInputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                fileDigest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return MessageDigest.isEqual(fileDigest.digest(), createDigest().digest(data));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1"); // NOI18N
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform has SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void write(FileObject fo, byte[] data) throws IOException {
+        OutputStream out = fo.getOutputStream();
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates all filters, running at most as many generations in parallel
+     * as there are processors. Filters which fail do not stop the others;
+     * the failures are reported together once all filters were processed.
+     *
+     * @return the primary files of all created filters
+     * @throws IOException if at least one filter could not be created
+     */
+    public List<FileObject> generateAll(List<ItkFilterSpec> specs) throws IOException {
+        return generateAll(specs, false);
+    }
+
+    /**
+     * Like {@link #generateAll}, but replaces existing files as
+     * {@link #regenerate} does.
+     *
+     * @return the primary files of all filters
+     */
+    public List<FileObject> regenerateAll(List<ItkFilterSpec> specs) throws IOException {
+        return generateAll(specs, true);
+    }
+
+    private List<FileObject> generateAll(List<ItkFilterSpec> specs, boolean regenerate) throws IOException {
+        final int n = specs.size();
+        List<Generation> generations = new ArrayList<Generation>(n);
+        RequestProcessor.Task[] tasks = new RequestProcessor.Task[n];
+
+        // rendering does not touch the target folders, so it runs in parallel
+        for (int i = 0; i < n; i++) {
+            final Generation generation = new Generation(specs.get(i));
+            generations.add(generation);
+            tasks[i] = RP.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        generation.render();
+                    } catch (IOException ex) {
+                        generation.error = ex;
+                    }
+                }
+            });
+        }
+        for (RequestProcessor.Task task : tasks) {
+            task.waitFinished();
+        }
+
+        writeAtomically(generations, regenerate);
+
+        List<FileObject> created = new ArrayList<FileObject>();
+        IOException firstError = null;
+        StringBuilder failed = new StringBuilder();
+        for (Generation generation : generations) {
+            if (generation.error != null) {
+                if (firstError == null) {
+                    firstError = generation.error;
+                } else {
+                    failed.append(", "); // NOI18N
+                }
+                failed.append(generation.spec.getClassName());
+            } else {
+                for (DataObject dobj : generation.getDataObjects()) {
+                    created.add(dobj.getPrimaryFile());
+                }
+            }
+        }
+
+        if (firstError != null) {
+            throw new IOException("Cannot create " + failed, firstError); // NOI18N
+        }
+        return created;
+    }
+
+    /**
+     * The expanded content of one template, before it is written.
+     */
+    private static final class RenderedFile {
+
+        final String ext;
+        final byte[] data;
+
+        RenderedFile(String ext, byte[] data) {
+            this.ext = ext;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The files of one filter. All of them are rendered before the first
+     * one is written; if writing fails, the files written and the folders
+     * created so far are deleted or restored, so that no half-written filter
+     * is left behind.
+     */
+    private final class Generation {
+
+        final ItkFilterSpec spec;
+        final List<RenderedFile> rendered = new ArrayList<RenderedFile>(2);
+        final List<FileObject> files = new ArrayList<FileObject>(2);
+        IOException error;
+
+        Generation(ItkFilterSpec spec) {
+            this.spec = spec;
+        }
+
+        void render() throws IOException {
+            Map<String, Object> args = spec.createTemplateArguments();
+            Date now = new Date();
+            if (headerTemplate != null) {
+                rendered.add(ItkFilterGenerator.render(headerTemplate, spec, args, now));
+            }
+            rendered.add(ItkFilterGenerator.render(sourceTemplate, spec, args, now));
+        }
+
+        /**
+         * Writes the rendered files. Errors are stored in {@link #error}.
+         *
+         * @param regenerate whether an existing file is overwritten, unless
+         * it already has the expanded content
+         */
+        void write(boolean regenerate) {
+            List<FileObject> created = new ArrayList<FileObject>(2);
+            Map<FileObject, byte[]> overwritten = new LinkedHashMap<FileObject, byte[]>();
+            try {
+                FileObject folder = createFolders(created);
+                for (RenderedFile file : rendered) {
+                    WizardMetrics.countFileSystemCall();
+                    FileObject fo = regenerate ? folder.getFileObject(spec.getClassName(), file.ext) : null;
+                    if (fo == null) {
+                        WizardMetrics.countFileSystemCall();
+                        fo = folder.createData(spec.getClassName(), file.ext);
+                        created.add(fo);
+                        ItkFilterGenerator.write(fo, file.data);
+                    } else if (hasContent(fo, file.data)) {
+                        LOG.log(Level.FINE, "{0} is up to date", fo); // NOI18N
+                    } else {
+                        overwritten.put(fo, fo.asBytes());
+                        ItkFilterGenerator.write(fo, file.data);
+                    }
+                    files.add(fo);
+                }
+                GeneratedFilterIndex.filterGenerated(spec);
+            } catch (IOException ex) {
+                error = ex;
+                files.clear();
+                rollback(created, overwritten);
+            }
+        }
+
+        /**
+         * Returns the target folder, creating the missing folders of its
+         * path. The outermost created folder is added to {@code created}.
+         */
+        private FileObject createFolders(List<FileObject> created) throws IOException {
+            FileObject folder = spec.getBaseFolder();
+            for (String name : spec.getFolderPath().split("/")) { // NOI18N
+                if (name.length() == 0) {
+                    continue;
+                }
+                WizardMetrics.countFileSystemCall();
+                FileObject child = folder.getFileObject(name);
+                if (child == null) {
+                    child = folder.createFolder(name);
+                    if (created.isEmpty()) {
+                        // deleting it deletes the folders created inside
+                        created.add(child);
+                    }
+                } else if (!child.isFolder()) {
+                    throw new IOException(child.getPath() + " is not a folder"); // NOI18N
+                }
+                folder = child;
+            }
+            return folder;
+        }
+
+        private void rollback(List<FileObject> created, Map<FileObject, byte[]> overwritten) {
+            for (FileObject fo : created) {
+                try {
+                    fo.delete();
+                } catch (IOException ex) {
+                    LOG.log(Level.INFO, "Cannot delete " + fo, ex); // NOI18N
+                }
+            }
+            for (Map.Entry<FileObject, byte[]> entry : overwritten.entrySet()) {
+                try {
+                    ItkFilterGenerator.write(entry.getKey(), entry.getValue());
+                } catch (IOException ex) {
+                    LOG.log(Level.INFO, "Cannot restore " + entry.getKey(), ex); // NOI18N
+                }
+            }
+        }
+
+        Set<DataObject> getDataObjects() throws IOException {
+            Set<DataObject> dobjs = new LinkedHashSet<DataObject>();
+            for (FileObject fo : files) {
+                dobjs.add(DataObject.find(fo));
+            }
+            if (LOG.isLoggable(Level.FINE)) {
+                TemplateCache cache = TemplateCache.getDefault();
+                LOG.log(Level.FINE, "Created {0}, template cache hits: {1}, misses: {2}", // NOI18N
+                        new Object[]{spec, cache.getHitCount(), cache.getMissCount()});
+            }
+            return dobjs;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.sendopts.CommandException;
+import org.netbeans.spi.sendopts.Env;
+import org.netbeans.spi.sendopts.Option;
+import org.netbeans.spi.sendopts.OptionProcessor;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.NbBundle;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Handles {@code --itk-generate-filters <manifest>} on the command line and
+ * creates all filters listed in the manifest. With {@code --itk-regenerate}
+ * existing filters are overwritten, but only files whose content changes are
+ * written; without a manifest, all filters generated before in the project
+ * of the current directory are regenerated. Filters that were only found by
+ * scanning the sources of the project may have been written by hand, they
+ * are skipped unless {@code --itk-force} is given. {@code --itk-list-filters}
+ * prints the filters generated in that project.
+ *
+ * @see ItkFilterManifest
+ */
+@ServiceProvider(service = OptionProcessor.class)
+public final class ItkFilterGeneratorOptions extends OptionProcessor {
+
+    private static final Option GENERATE = Option.shortDescription(
+            Option.requiredArgument(Option.NO_SHORT_NAME, "itk-generate-filters"), // NOI18N
+            "org.itk.netbeans.wizard.Bundle", "OPT_GenerateFilters"); // NOI18N
+
+    private static final Option REGENERATE = Option.shortDescription(
+            Option.withoutArgument(Option.NO_SHORT_NAME, "itk-regenerate"), // NOI18N
+            "org.itk.netbeans.wizard.Bundle", "OPT_Regenerate"); // NOI18N
+
+    private static final Option LIST = Option.shortDescription(
+            Option.withoutArgument(Option.NO_SHORT_NAME, "itk-list-filters"), // NOI18N
+            "org.itk.netbeans.wizard.Bundle", "OPT_ListFilters"); // NOI18N
+
+    private static final Option FORCE = Option.shortDescription(
+            Option.withoutArgument(Option.NO_SHORT_NAME, "itk-force"), // NOI18N
+            "org.itk.netbeans.wizard.Bundle", "OPT_Force"); // NOI18N
+
+    @Override
+    protected Set<Option> getOptions() {
+        return new HashSet<Option>(Arrays.asList(GENERATE, REGENERATE, LIST, FORCE));
+    }
+
+    @Override
+    protected void process(Env env, Map<Option, String[]> optionValues) throws CommandException {
+        String[] values = optionValues.get(GENERATE);
+        boolean regenerate = optionValues.containsKey(REGENERATE);
+        boolean list = optionValues.containsKey(LIST);
+        if ((values == null || values.length == 0) && !regenerate && !list) {
+            return;
+        }
+
+        PrintStream out = new PrintStream(env.getOutputStream());
+        try {
+            GeneratedFilterIndex index = null;
+            if (list) {
+                index = findIndex(env);
+                list(index, out);
+            }
+
+            List<ItkFilterSpec> specs;
+            if (values != null && values.length > 0) {
+                specs = ItkFilterManifest.parse(findManifest(env, values[0]));
+            } else if (regenerate) {
+                specs = getIndexedSpecs(index != null ? index : findIndex(env),
+                        optionValues.containsKey(FORCE), out);
+            } else {
+                return;
+            }
+            ItkFilterGenerator generator = ItkFilterGenerator.getDefault();
+            List<FileObject> created = regenerate
+                    ? generator.regenerateAll(specs) : generator.generateAll(specs);
+            out.println(NbBundle.getMessage(ItkFilterGeneratorOptions.class,
+                    "MSG_FiltersGenerated", specs.size(), created.size()));
+        } catch (IOException ex) {
+            CommandException ce = new CommandException(2, ex.getLocalizedMessage());
+            ce.initCause(ex);
+            throw ce;
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static FileObject findManifest(Env env, String path) throws CommandException {
+        File manifestFile = new File(path);
+        if (!manifestFile.isAbsolute()) {
+            manifestFile = new File(env.getCurrentDirectory(), path);
+        }
+        FileObject manifest = FileUtil.toFileObject(FileUtil.normalizeFile(manifestFile));
+        if (manifest == null || !manifest.isData()) {
+            throw new CommandException(1, NbBundle.getMessage(
+                    ItkFilterGeneratorOptions.class, "MSG_ManifestNotFound", manifestFile));
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns the index of the project owning the current directory.
+     */
+    private static GeneratedFilterIndex findIndex(Env env) throws CommandException {
+        File dir = FileUtil.normalizeFile(env.getCurrentDirectory());
+        FileObject fo = FileUtil.toFileObject(dir);
+        Project project = fo == null ? null : FileOwnerQuery.getOwner(fo);
+        if (project == null) {
+            throw new CommandException(1, NbBundle.getMessage(
+                    ItkFilterGeneratorOptions.class, "MSG_NoProject", dir));
+        }
+        return GeneratedFilterIndex.forProject(project);
+    }
+
+    private static List<GeneratedFilterIndex.Entry> getSortedEntries(GeneratedFilterIndex index) {
+        List<GeneratedFilterIndex.Entry> entries = new ArrayList<GeneratedFilterIndex.Entry>(index.getEntries());
+        Collections.sort(entries, new Comparator<GeneratedFilterIndex.Entry>() {
+            @Override
+            public int compare(GeneratedFilterIndex.Entry e1, GeneratedFilterIndex.Entry e2) {
+                return e1.className.compareTo(e2.className);
+            }
+        });
+        return entries;
+    }
+
+    private static void list(GeneratedFilterIndex index, PrintStream out) {
+        for (GeneratedFilterIndex.Entry entry : getSortedEntries(index)) {
+            StringBuilder files = new StringBuilder();
+            for (FileObject fo : entry.getFiles()) {
+                if (files.length() > 0) {
+                    files.append(", "); // NOI18N
+                }
+                files.append(FileUtil.getFileDisplayName(fo));
+            }
+            out.println(NbBundle.getMessage(ItkFilterGeneratorOptions.class, "FMT_GeneratedFilter",
+                    new Object[]{entry.className, entry.parentClassName, entry.threading.getId(), files}));
+        }
+    }
+
+    /**
+     * Returns the specifications to regenerate the indexed filters with,
+     * skipping filters whose folder was removed, and filters found by
+     * scanning unless {@code force} is set.
+     */
+    private static List<ItkFilterSpec> getIndexedSpecs(GeneratedFilterIndex index, boolean force,
+            PrintStream out) {
+        List<ItkFilterSpec> specs = new ArrayList<ItkFilterSpec>();
+        for (GeneratedFilterIndex.Entry entry : getSortedEntries(index)) {
+            if (entry.scanned && !force) {
+                out.println(NbBundle.getMessage(ItkFilterGeneratorOptions.class,
+                        "MSG_ScannedFilterSkipped", entry.className));
+                continue;
+            }
+            ItkFilterSpec spec = entry.toSpec();
+            if (spec != null) {
+                specs.add(spec);
+            }
+        }
+        return specs;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Reads the list of filters to create in one batch.
+ * <p>
+ * Every non-empty line which does not start with {@code #} describes one
+ * filter:
+ * <pre>
+ * path/relative/to/base/ClassName [ParentClassName] [threading] [option=value ...]
+ * </pre>
+ * The parent class defaults to {@code ImageToImageFilter}. The threading
+ * column is {@code single}, {@code classic} or {@code dynamic} and defaults
+ * to {@code single}; {@code true} and {@code false} are accepted for
+ * {@code classic} and {@code single}. The options are
+ * <ul>
+ * <li>{@code loop}: the loop style, {@code region}, {@code scanline},
+ * {@code indexed} or {@code neighborhood}, defaults to {@code region}</li>
+ * <li>{@code streaming}: {@code true} to propagate requested regions,
+ * defaults to {@code false}</li>
+ * <li>{@code radius}: the radius of the neighborhood and the padding of the
+ * requested input region, defaults to 0</li>
+ * </ul>
+ * Missing folders are created when the filters are written.
+ */
+public final class ItkFilterManifest {
+
+    private ItkFilterManifest() {
+    }
+
+    public static List<ItkFilterSpec> parse(FileObject manifest) throws IOException {
+        Reader reader = new InputStreamReader(manifest.getInputStream(), "UTF-8"); // NOI18N
+        try {
+            return parse(manifest.getParent(), reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static List<ItkFilterSpec> parse(FileObject baseFolder, Reader reader) throws IOException {
+        List<ItkFilterSpec> specs = new ArrayList<ItkFilterSpec>();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            line = line.trim();
+            if (line.length() == 0 || line.charAt(0) == '#') { // NOI18N
+                continue;
+            }
+
+            StringTokenizer tok = new StringTokenizer(line);
+            String path = tok.nextToken().replace('\\', '/'); // NOI18N
+            String parentClassName = null;
+            ThreadingModel threading = null;
+            LoopStyle loopStyle = null;
+            boolean streaming = false;
+            int radius = 0;
+            int column = 0;
+            while (tok.hasMoreTokens()) {
+                String token = tok.nextToken();
+                int eq = token.indexOf('='); // NOI18N
+                try {
+                    if (eq > 0) {
+                        String key = token.substring(0, eq);
+                        String value = token.substring(eq + 1);
+                        if ("loop".equals(key)) { // NOI18N
+                            loopStyle = LoopStyle.parse(value);
+                        } else if ("streaming".equals(key)) { // NOI18N
+                            streaming = parseBoolean(value);
+                        } else if ("radius".equals(key)) { // NOI18N
+                            radius = Integer.parseInt(value);
+                            if (radius < 0) {
+                                throw new IllegalArgumentException("Negative radius " + value); // NOI18N
+                            }
+                        } else {
+                            throw new IllegalArgumentException("Unknown option " + key); // NOI18N
+                        }
+                    } else if (column == 0) {
+                        parentClassName = token;
+                        column++;
+                    } else if (column == 1) {
+                        threading = ThreadingModel.parse(token);
+                        column++;
+                    } else {
+                        throw new IOException("Too many columns in line " + lineNo + ": " + line); // NOI18N
+                    }
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(ex.getMessage() + " in line " + lineNo + ": " + line, ex); // NOI18N
+                }
+            }
+
+            String folderPath = ""; // NOI18N
+            String className = path;
+            int slash = path.lastIndexOf('/'); // NOI18N
+            if (slash >= 0) {
+                className = path.substring(slash + 1);
+                folderPath = path.substring(0, slash);
+            }
+            if (className.length() == 0) {
+                throw new IOException("Missing class name in line " + lineNo + ": " + line); // NOI18N
+            }
+            specs.add(new ItkFilterSpec(baseFolder, folderPath, className, parentClassName,
+                    threading, loopStyle, streaming, radius));
+        }
+        return specs;
+    }
+
+    private static boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) { // NOI18N
+            return true;
+        } else if ("false".equalsIgnoreCase(value)) { // NOI18N
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + value); // NOI18N
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.openide.filesystems.FileObject;
+
+/**
+ * Describes a single ITK filter to generate: where to put it and the values
+ * the templates are filled with.
+ */
+public final class ItkFilterSpec {
+
+    static final String DEFAULT_PARENT_CLASS_NAME = "ImageToImageFilter"; // NOI18N
+
+    private final FileObject baseFolder;
+    /** path of the target folder relative to the base folder, may not exist yet */
+    private final String folderPath;
+    private final String className;
+    private final String parentClassName;
+    private final ThreadingModel threading;
+    private final LoopStyle loopStyle;
+    private final boolean streaming;
+    private final int radius;
+
+    /**
+     * Creates a filter whose pixel loop uses {@link LoopStyle#REGION}
+     * iterators.
+     */
+    public ItkFilterSpec(FileObject targetFolder, String className,
+            String parentClassName, ThreadingModel threading) {
+        this(targetFolder, className, parentClassName, threading, null);
+    }
+
+    /**
+     * Creates a filter which does not propagate requested regions.
+     */
+    public ItkFilterSpec(FileObject targetFolder, String className,
+            String parentClassName, ThreadingModel threading, LoopStyle loopStyle) {
+        this(targetFolder, className, parentClassName, threading, loopStyle, false, 0);
+    }
+
+    /**
+     * @param parentClassName the base class, null for
+     * {@code ImageToImageFilter}
+     * @param threading the threading model, null for
+     * {@link ThreadingModel#SINGLE}
+     * @param loopStyle the iterators of the pixel loop, null for
+     * {@link LoopStyle#REGION}
+     * @param streaming whether the filter overrides
+     * {@code GenerateInputRequestedRegion}, so that it can be streamed
+     * @param radius the radius of a neighborhood loop, the requested region
+     * of the input is padded by it when streaming or looping over
+     * neighborhoods
+     */
+    public ItkFilterSpec(FileObject targetFolder, String className,
+            String parentClassName, ThreadingModel threading, LoopStyle loopStyle,
+            boolean streaming, int radius) {
+        this(targetFolder, "", className, parentClassName, threading, loopStyle, streaming, radius); // NOI18N
+    }
+
+    /**
+     * Creates a filter in a folder which is created when the filter is
+     * written, if it does not exist yet.
+     *
+     * @param folderPath the path of the target folder relative to
+     * {@code baseFolder}, separated by slashes; empty for the base folder
+     */
+    ItkFilterSpec(FileObject baseFolder, String folderPath, String className,
+            String parentClassName, ThreadingModel threading, LoopStyle loopStyle,
+            boolean streaming, int radius) {
+        if (baseFolder == null) {
+            throw new NullPointerException("null baseFolder"); // NOI18N
+        }
+        if (className == null || className.length() == 0) {
+            throw new IllegalArgumentException("empty className"); // NOI18N
+        }
+        if (radius < 0) {
+            throw new IllegalArgumentException("negative radius " + radius); // NOI18N
+        }
+        this.baseFolder = baseFolder;
+        this.folderPath = folderPath;
+        this.className = className;
+        this.parentClassName = parentClassName == null
+                ? DEFAULT_PARENT_CLASS_NAME : parentClassName;
+        this.threading = threading == null ? ThreadingModel.SINGLE : threading;
+        this.loopStyle = loopStyle == null ? LoopStyle.REGION : loopStyle;
+        this.streaming = streaming;
+        this.radius = radius;
+    }
+
+    /**
+     * @return the folder the filter is created in, or null if it does not
+     * exist yet
+     */
+    public FileObject getTargetFolder() {
+        return folderPath.length() == 0 ? baseFolder : baseFolder.getFileObject(folderPath);
+    }
+
+    FileObject getBaseFolder() {
+        return baseFolder;
+    }
+
+    String getFolderPath() {
+        return folderPath;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getParentClassName() {
+        return parentClassName;
+    }
+
+    public ThreadingModel getThreadingModel() {
+        return threading;
+    }
+
+    public LoopStyle getLoopStyle() {
+        return loopStyle;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * FreeMarker Template will get its variables from HashMap.
+     * HashMap key is the variable name.
+     */
+    Map<String, Object> createTemplateArguments() {
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("className", className); // NOI18N
+        args.put("parentClassName", parentClassName); // NOI18N
+        args.put("threading", threading.getId()); // NOI18N
+        // for templates written before there were several threading models
+        args.put("multiThreaded", threading != ThreadingModel.SINGLE); // NOI18N
+        args.put("loopStyle", loopStyle.getId()); // NOI18N
+        args.put("streaming", streaming); // NOI18N
+        args.put("radius", radius); // NOI18N
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        String folder = folderPath.length() == 0
+                ? baseFolder.getPath() : baseFolder.getPath() + '/' + folderPath; // NOI18N
+        return folder + '/' + className; // NOI18N
+    }
+}
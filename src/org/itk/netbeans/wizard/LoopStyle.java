@@ -0,0 +1,80 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.util.Locale;
+import org.openide.util.NbBundle;
+
+/**
+ * The iterators the generated pixel loop walks the output region with.
+ */
+public enum LoopStyle {
+
+    /** {@code ImageRegionConstIterator}/{@code ImageRegionIterator} */
+    REGION("region"), // NOI18N
+    /** {@code ImageScanlineConstIterator}/{@code ImageScanlineIterator}, line by line */
+    SCANLINE("scanline"), // NOI18N
+    /** the {@code WithIndex} region iterators, for filters which need the pixel index */
+    INDEXED("indexed"), // NOI18N
+    /**
+     * {@code ConstNeighborhoodIterator} over the faces of
+     * {@code ImageBoundaryFacesCalculator}, with the boundary condition
+     * only checked outside the interior face
+     */
+    NEIGHBORHOOD("neighborhood"); // NOI18N
+
+    private final String id;
+
+    private LoopStyle(String id) {
+        this.id = id;
+    }
+
+    /**
+     * The value of the {@code loopStyle} template variable.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Whether the loop reads a neighborhood of the given radius around
+     * each pixel.
+     */
+    public boolean usesRadius() {
+        return this == NEIGHBORHOOD;
+    }
+
+    public String getDisplayName() {
+        return NbBundle.getMessage(LoopStyle.class, "LBL_LoopStyle_" + name()); // NOI18N
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code value} is not the id of a
+     * loop style
+     */
+    public static LoopStyle parse(String value) {
+        String lower = value.toLowerCase(Locale.ENGLISH);
+        for (LoopStyle style : values()) {
+            if (style.id.equals(lower)) {
+                return style;
+            }
+        }
+        throw new IllegalArgumentException("Unknown loop style " + value); // NOI18N
+    }
+}
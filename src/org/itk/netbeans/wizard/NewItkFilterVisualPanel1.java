@@ -18,14 +18,19 @@
  */
 package org.itk.netbeans.wizard;
 
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import org.netbeans.api.project.Project;
-import org.netbeans.api.project.ProjectUtils;
 import org.netbeans.api.project.SourceGroup;
-import org.netbeans.api.project.Sources;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.loaders.DataObject;
@@ -35,8 +40,9 @@ import org.openide.util.NbBundle;
 
 public final class NewItkFilterVisualPanel1 extends JPanel {
 
-    private static final String sourceExt = "hxx"; // NOI18N
-    private static final String headerExt = "h"; // NOI18N
+    static final String STEP_NAME = "Step #1"; // NOI18N
+    static final String sourceExt = "hxx"; // NOI18N
+    static final String headerExt = "h"; // NOI18N
     private Project project;
     private SourceGroup[] folders;
 
@@ -49,8 +55,44 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
         this.project = project;
         this.folders = folders;
 
+        // the values are initialized by readSettings of the wizard panel
         initComponents();
-        initValues(null, null, null);
+        threadingComboBox.setModel(new DefaultComboBoxModel(ThreadingModel.values()));
+        threadingComboBox.setRenderer(new DisplayNameRenderer());
+        loopStyleComboBox.setModel(new DefaultComboBoxModel(LoopStyle.values()));
+        loopStyleComboBox.setRenderer(new DisplayNameRenderer());
+        loopStyleComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                updateRadiusEnabled();
+            }
+        });
+        updateRadiusEnabled();
+
+        DocumentListener documentListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                changeSupport.fireChange();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                changeSupport.fireChange();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                changeSupport.fireChange();
+            }
+        };
+        classNameTextField.getDocument().addDocumentListener(documentListener);
+        folderTextField.getDocument().addDocumentListener(documentListener);
+        locationComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                changeSupport.fireChange();
+            }
+        });
     }
 
     public void addChangeListener(ChangeListener l) {
@@ -63,7 +105,7 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
 
     @Override
     public String getName() {
-        return "Step #1";
+        return STEP_NAME;
     }
 
     public String getClassName() {
@@ -78,69 +120,111 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
         parentClassComboBox.setSelectedItem(parent);
     }
 
-    public boolean isMultiThreaded() {
-        return multiThreadedCheckBox.isSelected();
+    public ThreadingModel getThreadingModel() {
+        return (ThreadingModel) threadingComboBox.getSelectedItem();
     }
 
-    public void setMultiThreaded(Boolean value) {
+    public void setThreadingModel(ThreadingModel value) {
         if (value != null) {
-            multiThreadedCheckBox.setSelected(value);
+            threadingComboBox.setSelectedItem(value);
         }
     }
 
-    public void initValues(FileObject template, FileObject preselectedFolder, String documentName) {
-        assert project != null;
+    public LoopStyle getLoopStyle() {
+        return (LoopStyle) loopStyleComboBox.getSelectedItem();
+    }
 
-        Sources sources = ProjectUtils.getSources(project);
+    public void setLoopStyle(LoopStyle value) {
+        if (value != null) {
+            loopStyleComboBox.setSelectedItem(value);
+        }
+    }
 
-        folders = sources.getSourceGroups(Sources.TYPE_GENERIC);
+    public boolean isStreaming() {
+        return streamingCheckBox.isSelected();
+    }
 
-        if (folders.length < 2) {
-            // one source group i.e. hide Location
-            locationLabel.setVisible(false);
-            locationComboBox.setVisible(false);
-        } else {
-            // more source groups user needs to select location
-            locationLabel.setVisible(true);
-            locationComboBox.setVisible(true);
-        }
+    public void setStreaming(boolean value) {
+        streamingCheckBox.setSelected(value);
+        updateRadiusEnabled();
+    }
 
-        parentClassComboBox.setSelectedIndex(0);
-        locationComboBox.setModel(new DefaultComboBoxModel(folders));
-        // Guess the group we want to create the file in
-        SourceGroup preselectedGroup = getPreselectedGroup(folders, preselectedFolder);
-        locationComboBox.setSelectedItem(preselectedGroup);
-        // Create OS dependent relative name
-        String relPreselectedFolder = getRelativeNativeName(preselectedGroup.getRootFolder(), preselectedFolder);
-        folderTextField.setText(relPreselectedFolder);
+    public int getRadius() {
+        return ((Number) radiusSpinner.getValue()).intValue();
+    }
 
-        String displayName = null;
+    public void setRadius(int value) {
+        radiusSpinner.setValue(value);
+    }
+
+    /**
+     * The radius is used by neighborhood loops, and to pad the requested
+     * region of filters which propagate it.
+     */
+    private void updateRadiusEnabled() {
+        LoopStyle loopStyle = getLoopStyle();
+        boolean enabled = streamingCheckBox.isSelected() || (loopStyle != null && loopStyle.usesRadius());
+        radiusLabel.setEnabled(enabled);
+        radiusSpinner.setEnabled(enabled);
+    }
+
+    public void initValues(FileObject template, FileObject preselectedFolder, String documentName) {
+        initValues(template, preselectedFolder, documentName, null);
+    }
+
+    /**
+     * Initializes the values, taking them from {@code prewarm} if it was
+     * started for the same folder.
+     */
+    void initValues(FileObject template, FileObject preselectedFolder, String documentName,
+            WizardPrewarm prewarm) {
+        WizardMetrics.Measurement m = WizardMetrics.start(WizardMetrics.INIT_VALUES);
         try {
-            if (template != null) {
-                DataObject templateDo = DataObject.find(template);
-                displayName = templateDo.getNodeDelegate().getDisplayName();
+            assert project != null;
+
+            WizardPrewarm.Values values = prewarm == null ? null : prewarm.get(project, preselectedFolder);
+            if (values == null) {
+                values = WizardPrewarm.compute(project, preselectedFolder);
             }
-        } catch (DataObjectNotFoundException ex) {
-            displayName = template.getName();
-        }
-        putClientProperty("NewFileWizard_Title", displayName);// NOI18N
-
-        if (template != null) {
-            if (documentName == null) {
-                final String baseName = getMessage("NewClassSuggestedName");
-                documentName = baseName;
-                FileObject currentFolder = preselectedFolder != null ? preselectedFolder : getTargetGroup().getRootFolder();
-                if (currentFolder != null) {
-                    documentName += generateUniqueSuffix(
-                            currentFolder, documentName,
-                            sourceExt, headerExt);
+
+            folders = values.groups;
+
+            if (folders.length < 2) {
+                // one source group i.e. hide Location
+                locationLabel.setVisible(false);
+                locationComboBox.setVisible(false);
+            } else {
+                // more source groups user needs to select location
+                locationLabel.setVisible(true);
+                locationComboBox.setVisible(true);
+            }
+
+            parentClassComboBox.setSelectedIndex(0);
+            locationComboBox.setModel(new DefaultComboBoxModel(folders));
+            locationComboBox.setSelectedItem(values.preselectedGroup);
+            folderTextField.setText(values.relativeFolder);
+
+            String displayName = null;
+            try {
+                if (template != null) {
+                    DataObject templateDo = DataObject.find(template);
+                    displayName = templateDo.getNodeDelegate().getDisplayName();
                 }
+            } catch (DataObjectNotFoundException ex) {
+                displayName = template.getName();
+            }
+            putClientProperty("NewFileWizard_Title", displayName);// NOI18N
 
+            if (template != null) {
+                if (documentName == null) {
+                    documentName = values.suggestedName;
+                }
+                classNameTextField.setText(documentName);
+                classNameTextField.selectAll();
             }
-            classNameTextField.setText(documentName);
-            classNameTextField.selectAll();
+        } finally {
+            m.stop();
         }
-
     }
 
     public SourceGroup getTargetGroup() {
@@ -181,31 +265,13 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
         return path == null ? "" : path.replace('/', File.separatorChar); // NOI18N
     }
 
-    protected static SourceGroup getPreselectedGroup(SourceGroup[] groups, FileObject folder) {
-        for (int i = 0; folder != null && i < groups.length; i++) {
-            if (FileUtil.isParentOf(groups[i].getRootFolder(), folder)
-                    || groups[i].getRootFolder().equals(folder)) {
-                return groups[i];
-            }
-        }
-        return groups[0];
+    static SourceGroup getPreselectedGroup(SourceGroupIndex index, FileObject folder) {
+        SourceGroup group = folder == null ? null : index.findGroup(folder);
+        return group != null ? group : index.getGroups()[0];
     }
 
     protected static String generateUniqueSuffix(FileObject folder, String prefix, String... extensions) {
-        for (int i = 0; true; ++i) {
-            String suffix = i == 0 ? "" : String.valueOf(i);
-            String filename = prefix + suffix;
-            boolean unique = true;
-            for (String ext : extensions) {
-                if (folder.getFileObject(filename, ext) != null) {
-                    unique = false;
-                    break;
-                }
-            }
-            if (unique) {
-                return suffix;
-            }
-        }
+        return FolderNameIndex.generateUniqueSuffix(folder, prefix, extensions);
     }
 
     protected static String getMessage(String name) {
@@ -222,7 +288,13 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
 
         jLabel2 = new javax.swing.JLabel();
         parentClassComboBox = new javax.swing.JComboBox();
-        multiThreadedCheckBox = new javax.swing.JCheckBox();
+        threadingLabel = new javax.swing.JLabel();
+        threadingComboBox = new javax.swing.JComboBox();
+        loopStyleLabel = new javax.swing.JLabel();
+        loopStyleComboBox = new javax.swing.JComboBox();
+        streamingCheckBox = new javax.swing.JCheckBox();
+        radiusLabel = new javax.swing.JLabel();
+        radiusSpinner = new javax.swing.JSpinner();
         jLabel1 = new javax.swing.JLabel();
         classNameTextField = new javax.swing.JTextField();
         jLabel3 = new javax.swing.JLabel();
@@ -240,7 +312,23 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
             }
         });
 
-        org.openide.awt.Mnemonics.setLocalizedText(multiThreadedCheckBox, org.openide.util.NbBundle.getMessage(NewItkFilterVisualPanel1.class, "NewItkFilterVisualPanel1.multiThreadedCheckBox.text")); // NOI18N
+        threadingLabel.setLabelFor(threadingComboBox);
+        org.openide.awt.Mnemonics.setLocalizedText(threadingLabel, org.openide.util.NbBundle.getMessage(NewItkFilterVisualPanel1.class, "NewItkFilterVisualPanel1.threadingLabel.text")); // NOI18N
+
+        loopStyleLabel.setLabelFor(loopStyleComboBox);
+        org.openide.awt.Mnemonics.setLocalizedText(loopStyleLabel, org.openide.util.NbBundle.getMessage(NewItkFilterVisualPanel1.class, "NewItkFilterVisualPanel1.loopStyleLabel.text")); // NOI18N
+
+        org.openide.awt.Mnemonics.setLocalizedText(streamingCheckBox, org.openide.util.NbBundle.getMessage(NewItkFilterVisualPanel1.class, "NewItkFilterVisualPanel1.streamingCheckBox.text")); // NOI18N
+        streamingCheckBox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                streamingCheckBoxActionPerformed(evt);
+            }
+        });
+
+        radiusLabel.setLabelFor(radiusSpinner);
+        org.openide.awt.Mnemonics.setLocalizedText(radiusLabel, org.openide.util.NbBundle.getMessage(NewItkFilterVisualPanel1.class, "NewItkFilterVisualPanel1.radiusLabel.text")); // NOI18N
+
+        radiusSpinner.setModel(new javax.swing.SpinnerNumberModel(0, 0, 100, 1));
 
         org.openide.awt.Mnemonics.setLocalizedText(jLabel1, org.openide.util.NbBundle.getMessage(NewItkFilterVisualPanel1.class, "NewItkFilterVisualPanel1.jLabel1.text")); // NOI18N
 
@@ -268,21 +356,25 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(jLabel2)
+                    .addComponent(threadingLabel)
+                    .addComponent(loopStyleLabel)
+                    .addComponent(radiusLabel)
                     .addComponent(jLabel1)
                     .addComponent(locationLabel)
                     .addComponent(jLabel3))
                 .addGap(32, 32, 32)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(parentClassComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(threadingComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(loopStyleComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(streamingCheckBox)
+                    .addComponent(radiusSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, 60, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(locationComboBox, 0, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(classNameTextField)
                     .addGroup(layout.createSequentialGroup()
-                        .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-                            .addComponent(multiThreadedCheckBox, javax.swing.GroupLayout.PREFERRED_SIZE, 128, javax.swing.GroupLayout.PREFERRED_SIZE)
-                            .addGroup(layout.createSequentialGroup()
-                                .addComponent(folderTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 209, javax.swing.GroupLayout.PREFERRED_SIZE)
-                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                                .addComponent(browseButton)))
+                        .addComponent(folderTextField, javax.swing.GroupLayout.PREFERRED_SIZE, 209, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(browseButton)
                         .addGap(0, 0, Short.MAX_VALUE)))
                 .addGap(26, 26, 26))
         );
@@ -307,8 +399,20 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
                     .addComponent(parentClassComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jLabel2))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
-                .addComponent(multiThreadedCheckBox)
-                .addContainerGap(125, Short.MAX_VALUE))
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(threadingComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(threadingLabel))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(loopStyleComboBox, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(loopStyleLabel))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(streamingCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(radiusSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(radiusLabel))
+                .addContainerGap(50, Short.MAX_VALUE))
         );
     }// </editor-fold>//GEN-END:initComponents
 
@@ -329,6 +433,10 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
         changeSupport.fireChange();
     }//GEN-LAST:event_parentClassComboBoxActionPerformed
 
+    private void streamingCheckBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_streamingCheckBoxActionPerformed
+        updateRadiusEnabled();
+    }//GEN-LAST:event_streamingCheckBoxActionPerformed
+
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton browseButton;
     private javax.swing.JTextField classNameTextField;
@@ -338,7 +446,30 @@ public final class NewItkFilterVisualPanel1 extends JPanel {
     private javax.swing.JLabel jLabel3;
     private javax.swing.JComboBox locationComboBox;
     private javax.swing.JLabel locationLabel;
-    private javax.swing.JCheckBox multiThreadedCheckBox;
+    private javax.swing.JComboBox loopStyleComboBox;
+    private javax.swing.JLabel loopStyleLabel;
     private javax.swing.JComboBox parentClassComboBox;
+    private javax.swing.JLabel radiusLabel;
+    private javax.swing.JSpinner radiusSpinner;
+    private javax.swing.JCheckBox streamingCheckBox;
+    private javax.swing.JComboBox threadingComboBox;
+    private javax.swing.JLabel threadingLabel;
     // End of variables declaration//GEN-END:variables
+
+    /**
+     * Shows the display name of the options in the combo boxes.
+     */
+    private static final class DisplayNameRenderer extends DefaultListCellRenderer {
+
+        @Override
+        public Component getListCellRendererComponent(JList list, Object value,
+                int index, boolean isSelected, boolean cellHasFocus) {
+            if (value instanceof ThreadingModel) {
+                value = ((ThreadingModel) value).getDisplayName();
+            } else if (value instanceof LoopStyle) {
+                value = ((LoopStyle) value).getDisplayName();
+            }
+            return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        }
+    }
 }
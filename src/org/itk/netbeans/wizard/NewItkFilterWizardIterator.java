@@ -18,23 +18,16 @@
  */
 package org.itk.netbeans.wizard;
 
-import java.awt.Component;
 import java.io.IOException;
 import java.util.*;
-import javax.swing.JComponent;
 import javax.swing.event.ChangeListener;
 import org.netbeans.api.project.Project;
-import org.netbeans.api.project.ProjectUtils;
 import org.netbeans.api.project.SourceGroup;
-import org.netbeans.api.project.Sources;
 import org.netbeans.api.templates.TemplateRegistration;
 import org.netbeans.api.templates.TemplateRegistrations;
 import org.openide.WizardDescriptor;
 import org.netbeans.spi.project.ui.templates.support.Templates;
 import org.openide.filesystems.FileObject;
-import org.openide.filesystems.FileUtil;
-import org.openide.loaders.DataFolder;
-import org.openide.loaders.DataObject;
 
 @TemplateRegistrations({
     @TemplateRegistration(
@@ -57,35 +50,37 @@ public final class NewItkFilterWizardIterator implements WizardDescriptor.Instan
 
     private int index;
     private WizardDescriptor wizard;
-    private List<WizardDescriptor.Panel<WizardDescriptor>> panels;
+    private List<NewItkFilterWizardPanel1> panels;
+    private WizardPrewarm prewarm;
 
-    private List<WizardDescriptor.Panel<WizardDescriptor>> getPanels() {
+    private List<NewItkFilterWizardPanel1> getPanels() {
         if (panels == null) {
-            panels = new ArrayList<WizardDescriptor.Panel<WizardDescriptor>>();
-
-            // Change to default new file panel and add our panel at bottom
-            Project project = Templates.getProject(wizard);
-            SourceGroup[] groups = ProjectUtils.getSources(project).getSourceGroups(Sources.TYPE_GENERIC);
-
-            panels.add(new NewItkFilterWizardPanel1(project, groups));
-
-            String[] steps = createSteps();
-            for (int i = 0; i < panels.size(); i++) {
-                Component c = panels.get(i).getComponent();
-                if (steps[i] == null) {
-                    // Default step name to component name of panel. Mainly
-                    // useful for getting the name of the target chooser to
-                    // appear in the list of steps.
-                    steps[i] = c.getName();
+            WizardMetrics.Measurement m = WizardMetrics.start(WizardMetrics.GET_PANELS);
+            try {
+                panels = new ArrayList<NewItkFilterWizardPanel1>();
+
+                // Change to default new file panel and add our panel at bottom
+                Project project = Templates.getProject(wizard);
+                SourceGroup[] groups = SourceGroupIndex.forProject(project).getGroups();
+
+                panels.add(new NewItkFilterWizardPanel1(project, groups, prewarm));
+
+                // The components are created when the panels are displayed,
+                // they get the steps from their panel then
+                String[] steps = createSteps();
+                for (int i = 0; i < panels.size(); i++) {
+                    if (steps[i] == null) {
+                        // Default step name to name of panel. Mainly
+                        // useful for getting the name of the target chooser to
+                        // appear in the list of steps.
+                        steps[i] = panels.get(i).getName();
+                    }
                 }
-                if (c instanceof JComponent) { // assume Swing components
-                    JComponent jc = (JComponent) c;
-                    jc.putClientProperty(WizardDescriptor.PROP_CONTENT_SELECTED_INDEX, i);
-                    jc.putClientProperty(WizardDescriptor.PROP_CONTENT_DATA, steps);
-                    jc.putClientProperty(WizardDescriptor.PROP_AUTO_WIZARD_STYLE, true);
-                    jc.putClientProperty(WizardDescriptor.PROP_CONTENT_DISPLAYED, true);
-                    jc.putClientProperty(WizardDescriptor.PROP_CONTENT_NUMBERED, true);
+                for (int i = 0; i < panels.size(); i++) {
+                    panels.get(i).setContentData(i, steps);
                 }
+            } finally {
+                m.stop();
             }
         }
         return panels;
@@ -93,50 +88,44 @@ public final class NewItkFilterWizardIterator implements WizardDescriptor.Instan
 
     @Override
     public Set<?> instantiate() throws IOException {
-        //Get the class:
-        String className = Templates.getTargetName(wizard);
-
-        // FreeMarker Template will get its variables from HashMap.
-        // HashMap key is the variable name.
-        Map<String, Object> args = new HashMap<String, Object>();
-        args.put("className", className); // NOI18N
-        args.put("parentClassName", wizard.getProperty( // NOI18N
-                NewItkFilterWizardPanel1.PROP_PARENT_CLASS_NAME));
-        args.put("multiThreaded", wizard.getProperty( // NOI18N
-                NewItkFilterWizardPanel1.PROP_MULTI_THREADED));
-
-        LinkedHashSet<DataObject> files = new LinkedHashSet<DataObject>();
-
-        //Get the source folder
-        FileObject dir = Templates.getTargetFolder(wizard);
-        DataFolder targetFolderName = DataFolder.findFolder(dir);
-
-        //Get the template and convert it:
-        FileObject sourceTemplate = Templates.getTemplate(wizard);
-        FileObject headerTemplate = FileUtil.findBrother(sourceTemplate, "h"); // NOI18N
-        if (headerTemplate != null) {
-            DataObject dobjHeader = DataObject.find(headerTemplate);
-            files.add(dobjHeader.createFromTemplate(targetFolderName, className, args));
+        WizardMetrics.Measurement m = WizardMetrics.start(WizardMetrics.INSTANTIATE);
+        try {
+            //Get the class:
+            String className = Templates.getTargetName(wizard);
+
+            //Get the source folder
+            FileObject dir = Templates.getTargetFolder(wizard);
+
+            Integer radius = (Integer) wizard.getProperty(NewItkFilterWizardPanel1.PROP_RADIUS);
+            ItkFilterSpec spec = new ItkFilterSpec(dir, className,
+                    (String) wizard.getProperty(NewItkFilterWizardPanel1.PROP_PARENT_CLASS_NAME),
+                    (ThreadingModel) wizard.getProperty(NewItkFilterWizardPanel1.PROP_THREADING),
+                    (LoopStyle) wizard.getProperty(NewItkFilterWizardPanel1.PROP_LOOP_STYLE),
+                    Boolean.TRUE.equals(wizard.getProperty(NewItkFilterWizardPanel1.PROP_STREAMING)),
+                    radius == null ? 0 : radius);
+
+            //Get the template and convert it:
+            FileObject sourceTemplate = Templates.getTemplate(wizard);
+            return new ItkFilterGenerator(sourceTemplate).generate(spec);
+        } finally {
+            m.stop();
         }
-
-        DataObject dobjSource = DataObject.find(sourceTemplate);
-
-        //Define the template from the above,
-        //passing the package, the file name, and the map of strings to the template:
-        DataObject dobj = dobjSource.createFromTemplate(targetFolderName, className, args);
-        files.add(dobj);
-
-        return files;
     }
 
     @Override
     public void initialize(WizardDescriptor wizard) {
         this.wizard = wizard;
+        // Called when the template was selected, prepare the panel meanwhile
+        Project project = Templates.getProject(wizard);
+        if (project != null) {
+            prewarm = WizardPrewarm.start(project, Templates.getTargetFolder(wizard));
+        }
     }
 
     @Override
     public void uninitialize(WizardDescriptor wizard) {
         panels = null;
+        prewarm = null;
     }
 
     @Override
@@ -200,7 +189,7 @@ public final class NewItkFilterWizardIterator implements WizardDescriptor.Instan
             if (i < (beforeSteps.length - 1)) {
                 res[i] = beforeSteps[i];
             } else {
-                res[i] = panels.get(i - beforeSteps.length + 1).getComponent().getName();
+                res[i] = panels.get(i - beforeSteps.length + 1).getName();
             }
         }
         return res;
@@ -18,7 +18,11 @@
  */
 package org.itk.netbeans.wizard;
 
+import java.awt.EventQueue;
 import java.io.IOException;
+import java.util.regex.Pattern;
+import javax.swing.JComponent;
+import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.SourceGroup;
@@ -27,13 +31,22 @@ import org.openide.ErrorManager;
 import org.openide.WizardDescriptor;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
+import org.openide.util.ChangeSupport;
 import org.openide.util.HelpCtx;
 import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
 
 public class NewItkFilterWizardPanel1 implements WizardDescriptor.Panel<WizardDescriptor> {
 
     static final String PROP_PARENT_CLASS_NAME = "parentClassName";// NOI18N
-    static final String PROP_MULTI_THREADED = "multiThreaded";// NOI18N
+    static final String PROP_THREADING = "threading";// NOI18N
+    static final String PROP_LOOP_STYLE = "loopStyle";// NOI18N
+    static final String PROP_STREAMING = "streaming";// NOI18N
+    static final String PROP_RADIUS = "radius";// NOI18N
+    private static final RequestProcessor RP = new RequestProcessor(NewItkFilterWizardPanel1.class.getName());
+    /** milliseconds to wait for further input before looking for collisions */
+    private static final int VALIDATION_DELAY = 300;
+    private static final Pattern CLASS_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*"); // NOI18N
     /**
      * The visual component that displays this panel. If you need to access the
      * component from this class, just use getComponent().
@@ -41,12 +54,61 @@ public class NewItkFilterWizardPanel1 implements WizardDescriptor.Panel<WizardDe
     private NewItkFilterVisualPanel1 component;
     private Project project;
     private SourceGroup[] folders;
+    private int contentIndex;
+    private String[] contentData;
+    private WizardPrewarm prewarm;
+    private WizardDescriptor wizard;
+    private final ChangeSupport changeSupport = new ChangeSupport(this);
+    private final RequestProcessor.Task validationTask = RP.create(new Runnable() {
+        @Override
+        public void run() {
+            findCollisions();
+        }
+    });
+    /** the input the collision check runs for, changed in the EDT only */
+    private volatile Input pending;
+    private boolean valid = true;
 
     public NewItkFilterWizardPanel1(Project project, SourceGroup[] folders) {
         this.project = project;
         this.folders = folders;
     }
 
+    NewItkFilterWizardPanel1(Project project, SourceGroup[] folders, WizardPrewarm prewarm) {
+        this(project, folders);
+        this.prewarm = prewarm;
+    }
+
+    /**
+     * The name of the step, available without creating the component.
+     */
+    public String getName() {
+        return NewItkFilterVisualPanel1.STEP_NAME;
+    }
+
+    /**
+     * Sets the position of this panel and the names of all steps, which
+     * are passed to the component once it is created.
+     */
+    void setContentData(int index, String[] steps) {
+        this.contentIndex = index;
+        this.contentData = steps;
+        if (component != null) {
+            putContentData(component);
+        }
+    }
+
+    private void putContentData(JComponent jc) {
+        if (contentData == null) {
+            return;
+        }
+        jc.putClientProperty(WizardDescriptor.PROP_CONTENT_SELECTED_INDEX, contentIndex);
+        jc.putClientProperty(WizardDescriptor.PROP_CONTENT_DATA, contentData);
+        jc.putClientProperty(WizardDescriptor.PROP_AUTO_WIZARD_STYLE, true);
+        jc.putClientProperty(WizardDescriptor.PROP_CONTENT_DISPLAYED, true);
+        jc.putClientProperty(WizardDescriptor.PROP_CONTENT_NUMBERED, true);
+    }
+
     // Get the visual component for the panel. In this template, the component
     // is kept separate. This can be more efficient: if the wizard is created
     // but never displayed, or not all panels are displayed, it is better to
@@ -55,6 +117,13 @@ public class NewItkFilterWizardPanel1 implements WizardDescriptor.Panel<WizardDe
     public NewItkFilterVisualPanel1 getComponent() {
         if (component == null) {
             component = new NewItkFilterVisualPanel1(project, folders);
+            putContentData(component);
+            component.addChangeListener(new ChangeListener() {
+                @Override
+                public void stateChanged(ChangeEvent e) {
+                    validate();
+                }
+            });
         }
         return component;
     }
@@ -69,64 +138,185 @@ public class NewItkFilterWizardPanel1 implements WizardDescriptor.Panel<WizardDe
 
     @Override
     public boolean isValid() {
-        // If it is always OK to press Next or Finish, then:
-        return true;
-        // If it depends on some condition (form filled out...) and
-        // this condition changes (last form field filled in...) then
-        // use ChangeSupport to implement add/removeChangeListener below.
-        // WizardDescriptor.ERROR/WARNING/INFORMATION_MESSAGE will also be useful.
+        return valid;
     }
 
     @Override
     public void addChangeListener(ChangeListener l) {
+        changeSupport.addChangeListener(l);
     }
 
     @Override
     public void removeChangeListener(ChangeListener l) {
+        changeSupport.removeChangeListener(l);
+    }
+
+    /**
+     * Checks the class name right away and schedules the check for existing
+     * files and filters, which needs the filesystem, in the background. The
+     * panel is invalid until that check is done. Called in the EDT whenever
+     * the input changes.
+     */
+    private void validate() {
+        if (wizard == null) {
+            return;
+        }
+        String name = getClassName();
+        if (name.length() == 0) {
+            validationTask.cancel();
+            pending = null;
+            setMessages(NbBundle.getMessage(NewItkFilterWizardPanel1.class, "MSG_EmptyClassName"), null);
+        } else if (!CLASS_NAME.matcher(name).matches()) {
+            validationTask.cancel();
+            pending = null;
+            setMessages(NbBundle.getMessage(NewItkFilterWizardPanel1.class, "MSG_InvalidClassName", name), null);
+        } else {
+            Input input = new Input(component.getTargetGroup().getRootFolder(),
+                    getTargetFolderName(), name);
+            if (!input.equals(pending)) {
+                pending = input;
+                validationTask.schedule(VALIDATION_DELAY);
+                setValid(false);
+            }
+        }
+    }
+
+    /**
+     * Looks for files and filters with the pending class name, in the
+     * target folder and in all source groups of the project.
+     */
+    private void findCollisions() {
+        final Input input = pending;
+        if (input == null) {
+            return;
+        }
+        String error = null;
+        String warning = null;
+
+        WizardMetrics.countFileSystemCall();
+        FileObject folder = input.folderName.length() == 0
+                ? input.rootFolder : input.rootFolder.getFileObject(input.folderName);
+        if (folder != null && folder.isFolder()) {
+            for (String ext : new String[]{NewItkFilterVisualPanel1.headerExt, NewItkFilterVisualPanel1.sourceExt}) {
+                if (FolderNameIndex.exists(folder, input.className, ext)) {
+                    error = NbBundle.getMessage(NewItkFilterWizardPanel1.class,
+                            "MSG_FileExists", input.className + '.' + ext); // NOI18N
+                    break;
+                }
+            }
+        }
+        if (error == null && project != null) {
+            GeneratedFilterIndex.Entry entry = GeneratedFilterIndex.forProject(project).get(input.className);
+            FileObject filterFolder = entry == null ? null : entry.getFolder();
+            if (filterFolder != null && !filterFolder.equals(folder)) {
+                warning = NbBundle.getMessage(NewItkFilterWizardPanel1.class, "MSG_FilterExists",
+                        input.className, FileUtil.getFileDisplayName(filterFolder));
+            }
+        }
+
+        final String errorMessage = error;
+        final String warningMessage = warning;
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                // ignore the result if the input changed meanwhile
+                if (pending == input) {
+                    setMessages(errorMessage, warningMessage);
+                }
+            }
+        });
+    }
+
+    private void setMessages(String error, String warning) {
+        if (error != null) {
+            wizard.putProperty(WizardDescriptor.PROP_ERROR_MESSAGE, error);
+        } else if (warning != null) {
+            wizard.putProperty(WizardDescriptor.PROP_WARNING_MESSAGE, warning);
+        } else {
+            wizard.putProperty(WizardDescriptor.PROP_ERROR_MESSAGE, null);
+        }
+        setValid(error == null);
+    }
+
+    private void setValid(boolean v) {
+        if (valid != v) {
+            valid = v;
+            changeSupport.fireChange();
+        }
     }
 
     @Override
     public void readSettings(WizardDescriptor wiz) {
-        // Try to preselect a folder
-        FileObject preselectedTarget = Templates.getTargetFolder(wiz);
-        // Try to preserve the already entered target name
-        String targetName = Templates.getTargetName(wiz);
-        // Init values
-        component.initValues(Templates.getTemplate(wiz), preselectedTarget, targetName);
+        WizardMetrics.Measurement m = WizardMetrics.start(WizardMetrics.READ_SETTINGS);
+        try {
+            wizard = wiz;
+            // Try to preselect a folder
+            FileObject preselectedTarget = Templates.getTargetFolder(wiz);
+            // Try to preserve the already entered target name
+            String targetName = Templates.getTargetName(wiz);
+            // Init values
+            NewItkFilterVisualPanel1 c = getComponent();
+            c.initValues(Templates.getTemplate(wiz), preselectedTarget, targetName, prewarm);
 
-        component.setParentClassName((String) wiz.getProperty(PROP_PARENT_CLASS_NAME));
-        component.setMultiThreaded((Boolean) wiz.getProperty(PROP_MULTI_THREADED));
+            c.setParentClassName((String) wiz.getProperty(PROP_PARENT_CLASS_NAME));
+            c.setThreadingModel((ThreadingModel) wiz.getProperty(PROP_THREADING));
+            c.setLoopStyle((LoopStyle) wiz.getProperty(PROP_LOOP_STYLE));
+            c.setStreaming(Boolean.TRUE.equals(wiz.getProperty(PROP_STREAMING)));
+            Integer radius = (Integer) wiz.getProperty(PROP_RADIUS);
+            if (radius != null) {
+                c.setRadius(radius);
+            }
+        } finally {
+            m.stop();
+        }
     }
 
     @Override
     public void storeSettings(WizardDescriptor wiz) {
-        if (WizardDescriptor.PREVIOUS_OPTION.equals(wiz.getValue())) {
-            return;
-        }
-        if (!wiz.getValue().equals(WizardDescriptor.CANCEL_OPTION) && isValid()) {
-            String name = component.getClassName();
-            if (name.indexOf('/') > 0) { // NOI18N
-                name = name.substring(name.lastIndexOf('/') + 1);
+        WizardMetrics.Measurement m = WizardMetrics.start(WizardMetrics.STORE_SETTINGS);
+        try {
+            if (component == null || WizardDescriptor.PREVIOUS_OPTION.equals(wiz.getValue())) {
+                // never displayed or going back
+                return;
             }
+            if (!wiz.getValue().equals(WizardDescriptor.CANCEL_OPTION) && isValid()) {
+                String name = getClassName();
 
-            FileObject targetfo = getTargetFolderFromGUI();
-            try {
-                Templates.setTargetFolder(wiz, targetfo);
-            } catch (IllegalArgumentException iae) {
-                ErrorManager.getDefault().annotate(iae, ErrorManager.EXCEPTION, null,
-                        NbBundle.getMessage(NewItkFilterWizardPanel1.class, "MSG_Cannot_Create_Folder",
-                        component.getTargetFolder()), null, null);
-                throw iae;
-            }
-            Templates.setTargetName(wiz, name);
+                FileObject targetfo = getTargetFolderFromGUI();
+                try {
+                    Templates.setTargetFolder(wiz, targetfo);
+                } catch (IllegalArgumentException iae) {
+                    ErrorManager.getDefault().annotate(iae, ErrorManager.EXCEPTION, null,
+                            NbBundle.getMessage(NewItkFilterWizardPanel1.class, "MSG_Cannot_Create_Folder",
+                            component.getTargetFolder()), null, null);
+                    throw iae;
+                }
+                Templates.setTargetName(wiz, name);
 
-            wiz.putProperty(PROP_PARENT_CLASS_NAME, component.getParentClassName()); // NOI18N
-            wiz.putProperty(PROP_MULTI_THREADED, component.isMultiThreaded());
+                wiz.putProperty(PROP_PARENT_CLASS_NAME, component.getParentClassName()); // NOI18N
+                wiz.putProperty(PROP_THREADING, component.getThreadingModel());
+                wiz.putProperty(PROP_LOOP_STYLE, component.getLoopStyle());
+                wiz.putProperty(PROP_STREAMING, component.isStreaming());
+                wiz.putProperty(PROP_RADIUS, component.getRadius());
+            }
+        } finally {
+            m.stop();
         }
     }
 
-    private FileObject getTargetFolderFromGUI() {
-        FileObject rootFolder = component.getTargetGroup().getRootFolder();
+    /**
+     * Returns the class name without a path typed in front of it.
+     */
+    private String getClassName() {
+        String name = component.getClassName();
+        return name.substring(name.lastIndexOf('/') + 1); // NOI18N
+    }
+
+    /**
+     * Returns the target folder relative to the root of the target group,
+     * including a path typed in front of the class name.
+     */
+    private String getTargetFolderName() {
         String folderName = component.getTargetFolder();
         String newObject = component.getClassName();
 
@@ -134,17 +324,25 @@ public class NewItkFilterWizardPanel1 implements WizardDescriptor.Panel<WizardDe
             String path = newObject.substring(0, newObject.lastIndexOf('/')); // NOI18N
             folderName = folderName == null || "".equals(folderName) ? path : folderName + '/' + path; // NOI18N
         }
+        return folderName == null ? "" : folderName; // NOI18N
+    }
+
+    private FileObject getTargetFolderFromGUI() {
+        FileObject rootFolder = component.getTargetGroup().getRootFolder();
+        String folderName = getTargetFolderName();
 
         FileObject targetFolder;
         if (folderName == null || folderName.length() == 0) {
             targetFolder = rootFolder;
         } else {
+            WizardMetrics.countFileSystemCall();
             targetFolder = rootFolder.getFileObject(folderName);
         }
 
         if (targetFolder == null) {
             // XXX add deletion of the file in uninitalize of the wizard
             try {
+                WizardMetrics.countFileSystemCall();
                 targetFolder = FileUtil.createFolder(rootFolder, folderName);
             } catch (IOException ioe) {
                 // XXX
@@ -154,4 +352,35 @@ public class NewItkFilterWizardPanel1 implements WizardDescriptor.Panel<WizardDe
 
         return targetFolder;
     }
+
+    /**
+     * The values of the component the collision check depends on.
+     */
+    private static final class Input {
+
+        final FileObject rootFolder;
+        final String folderName;
+        final String className;
+
+        Input(FileObject rootFolder, String folderName, String className) {
+            this.rootFolder = rootFolder;
+            this.folderName = folderName;
+            this.className = className;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Input)) {
+                return false;
+            }
+            Input other = (Input) obj;
+            return rootFolder.equals(other.rootFolder) && folderName.equals(other.folderName)
+                    && className.equals(other.className);
+        }
+
+        @Override
+        public int hashCode() {
+            return (rootFolder.hashCode() * 31 + folderName.hashCode()) * 31 + className.hashCode();
+        }
+    }
 }
@@ -45,17 +45,26 @@ package org.itk.netbeans.wizard;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.WeakHashMap;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.ProjectUtils;
 import org.netbeans.api.project.ProjectInformation;
 import org.netbeans.api.project.SourceGroup;
-import org.netbeans.api.project.Sources;
 import org.netbeans.api.queries.VisibilityQuery;
 //import org.netbeans.spi.project.ui.support.CommonProjectActions;
 import org.openide.ErrorManager;
@@ -73,6 +82,7 @@ import org.openide.nodes.NodeOp;
 import org.openide.util.ChangeSupport;
 import org.openide.util.NbBundle;
 import org.openide.util.Lookup;
+import org.openide.util.RequestProcessor;
 import org.openide.util.WeakListeners;
 import org.openide.util.lookup.Lookups;
 import org.openide.util.lookup.ProxyLookup;
@@ -88,26 +98,18 @@ public class PhysicalView {
     }
 
     public static Node[] createNodesForProject(Project p) {
-        Sources s = ProjectUtils.getSources(p);
-        SourceGroup[] groups = s.getSourceGroups(Sources.TYPE_GENERIC);
+        SourceGroupIndex index = SourceGroupIndex.forProject(p);
+        SourceGroup[] groups = index.getGroups();
 
         FileObject projectDirectory = p.getProjectDirectory();
         SourceGroup projectDirGroup = null;
 
         // First find the source group which will represent the project
-        for (int i = 0; i < groups.length; i++) {
-            FileObject groupRoot = groups[i].getRootFolder();
-            if (projectDirectory.equals(groupRoot) ||
-                    FileUtil.isParentOf(groupRoot, projectDirectory)) {
-                if (projectDirGroup != null) {
-                    // more than once => Illegal
-                    projectDirGroup = null;
-                    break;
-                } else {
-                    projectDirGroup = groups[i];
-                }
-            }
+        List<SourceGroup> projectDirGroups = index.findGroups(projectDirectory);
+        if (projectDirGroups.size() == 1) {
+            projectDirGroup = projectDirGroups.get(0);
         }
+        // more than once => Illegal
 
         if (projectDirGroup == null) {
             // Illegal project
@@ -138,20 +140,59 @@ public class PhysicalView {
         return nodes;
     }
 
+    /**
+     * Filters by {@link VisibilityQuery}, remembering the results for the
+     * most recently queried files until the visibility changes. A result is
+     * only used for the name it was computed for, as a renamed file may be
+     * ignored under its new name.
+     */
     static final class VisibilityQueryDataFilter implements ChangeListener, ChangeableDataFilter {
 
+        private static final int CACHE_SIZE = 10000;
+        private static final VisibilityQueryDataFilter DEFAULT = new VisibilityQueryDataFilter();
+
         private final ChangeSupport changeSupport = new ChangeSupport(this);
+        private final Map<FileObject, Visibility> visibility =
+                new LinkedHashMap<FileObject, Visibility>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FileObject, Visibility> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
 
         public VisibilityQueryDataFilter() {
             VisibilityQuery.getDefault().addChangeListener(this);
         }
 
+        static VisibilityQueryDataFilter getDefault() {
+            return DEFAULT;
+        }
+
         public boolean acceptDataObject(DataObject obj) {
             FileObject fo = obj.getPrimaryFile();
-            return VisibilityQuery.getDefault().isVisible(fo);
+            return isVisible(fo);
+        }
+
+        boolean isVisible(FileObject fo) {
+            String nameExt = fo.getNameExt();
+            synchronized (visibility) {
+                Visibility cached = visibility.get(fo);
+                if (cached != null && cached.nameExt.equals(nameExt)) {
+                    return cached.visible;
+                }
+            }
+            // ask outside of the lock, queries may take long
+            boolean visible = VisibilityQuery.getDefault().isVisible(fo);
+            synchronized (visibility) {
+                visibility.put(fo, new Visibility(nameExt, visible));
+            }
+            return visible;
         }
 
         public void stateChanged(ChangeEvent e) {
+            synchronized (visibility) {
+                visibility.clear();
+            }
             changeSupport.fireChange();
         }
 
@@ -162,16 +203,29 @@ public class PhysicalView {
         public void removeChangeListener(ChangeListener listener) {
             changeSupport.removeChangeListener(listener);
         }
+
+        private static final class Visibility {
+
+            /** the name the visibility was queried for */
+            final String nameExt;
+            final boolean visible;
+
+            Visibility(String nameExt, boolean visible) {
+                this.nameExt = nameExt;
+                this.visible = visible;
+            }
+        }
     }
 
-    static final class GroupNode extends FilterNode implements PropertyChangeListener {
+    static final class GroupNode extends FilterNode {
 
-        private static final DataFilter VISIBILITY_QUERY_FILTER = new VisibilityQueryDataFilter();
+        private static final DataFilter VISIBILITY_QUERY_FILTER = VisibilityQueryDataFilter.getDefault();
         static final String GROUP_NAME_PATTERN = NbBundle.getMessage(
                 PhysicalView.class, "FMT_PhysicalView_GroupName"); // NOI18N
         private ProjectInformation pi;
         private SourceGroup group;
         private boolean isProjectDir;
+        private final ListenerHub hub;
 
         public GroupNode(Project project, SourceGroup group, boolean isProjectDir, DataFolder dataFolder) {
             super(dataFolder.getNodeDelegate(),
@@ -181,8 +235,9 @@ public class PhysicalView {
             this.pi = ProjectUtils.getInformation(project);
             this.group = group;
             this.isProjectDir = isProjectDir;
-            pi.addPropertyChangeListener(WeakListeners.propertyChange(this, pi));
-            group.addPropertyChangeListener(WeakListeners.propertyChange(this, group));
+            // the hub is kept alive by its nodes
+            this.hub = ListenerHub.forProject(project, pi);
+            hub.register(this);
         }
 
         // XXX May need to change icons as well
@@ -271,29 +326,18 @@ public class PhysicalView {
         }*/
 
         // Private methods -------------------------------------------------    
-        public void propertyChange(PropertyChangeEvent evt) {
-            String prop = evt.getPropertyName();
-            if (ProjectInformation.PROP_DISPLAY_NAME.equals(prop)) {
-                fireDisplayNameChange(null, null);
-            } else if (ProjectInformation.PROP_NAME.equals(prop)) {
-                fireNameChange(null, null);
-            } else if (ProjectInformation.PROP_ICON.equals(prop)) {
-                // OK, ignore
-            } else if ("name".equals(prop)) { // NOI18N
-                fireNameChange(null, null);
-            } else if ("displayName".equals(prop)) { // NOI18N
-                fireDisplayNameChange(null, null);
-            } else if ("icon".equals(prop)) { // NOI18N
-                // OK, ignore
-            } else if ("rootFolder".equals(prop)) { // NOI18N
-                // XXX Do something to children and lookup 
+        /**
+         * Fires the changes collected by the {@link ListenerHub}.
+         */
+        void fireChanges(int changes) {
+            if ((changes & ListenerHub.NAME) != 0) {
                 fireNameChange(null, null);
+            }
+            if ((changes & ListenerHub.DISPLAY_NAME) != 0) {
                 fireDisplayNameChange(null, null);
+            }
+            if ((changes & ListenerHub.SHORT_DESCRIPTION) != 0) {
                 fireShortDescriptionChange(null, null);
-            } else if (SourceGroup.PROP_CONTAINERSHIP.equals(prop)) {
-                // OK, ignore
-            } else {
-                assert false : "Attempt to fire an unsupported property change event from " + pi.getClass().getName() + ": " + prop;
             }
         }
 
@@ -306,6 +350,129 @@ public class PhysicalView {
         }
     }
 
+    /**
+     * Listens once to the {@link ProjectInformation} of a project and once
+     * to each of its source groups on behalf of all {@link GroupNode}s.
+     * Property names are translated to node changes with a table, and the
+     * changes of a burst of events are fired together, once per node.
+     */
+    static final class ListenerHub implements PropertyChangeListener, Runnable {
+
+        static final int NAME = 1;
+        static final int DISPLAY_NAME = 2;
+        static final int SHORT_DESCRIPTION = 4;
+        private static final Map<String, Integer> CHANGES = new HashMap<String, Integer>();
+
+        static {
+            CHANGES.put(ProjectInformation.PROP_DISPLAY_NAME, DISPLAY_NAME);
+            CHANGES.put(ProjectInformation.PROP_NAME, NAME);
+            CHANGES.put(ProjectInformation.PROP_ICON, 0);
+            CHANGES.put("name", NAME); // NOI18N
+            CHANGES.put("displayName", DISPLAY_NAME); // NOI18N
+            CHANGES.put("icon", 0); // NOI18N
+            // XXX Do something to children and lookup
+            CHANGES.put("rootFolder", NAME | DISPLAY_NAME | SHORT_DESCRIPTION); // NOI18N
+            CHANGES.put(SourceGroup.PROP_CONTAINERSHIP, 0);
+        }
+
+        private static final RequestProcessor RP = new RequestProcessor(ListenerHub.class.getName());
+        /** milliseconds to wait for further events */
+        private static final int COALESCE_DELAY = 100;
+        private static final Map<Project, Reference<ListenerHub>> HUBS =
+                new WeakHashMap<Project, Reference<ListenerHub>>();
+
+        private final ProjectInformation pi;
+        private final List<Reference<GroupNode>> nodes = new ArrayList<Reference<GroupNode>>();
+        private final Map<SourceGroup, Boolean> groups = new WeakHashMap<SourceGroup, Boolean>();
+        /** changes of the project information, applying to all nodes */
+        private int projectChanges;
+        /** changes by source group */
+        private final Map<SourceGroup, Integer> groupChanges = new HashMap<SourceGroup, Integer>();
+        private final RequestProcessor.Task fireTask = RP.create(this);
+
+        private ListenerHub(ProjectInformation pi) {
+            this.pi = pi;
+            pi.addPropertyChangeListener(WeakListeners.propertyChange(this, pi));
+        }
+
+        static ListenerHub forProject(Project project, ProjectInformation pi) {
+            synchronized (HUBS) {
+                Reference<ListenerHub> ref = HUBS.get(project);
+                ListenerHub hub = ref == null ? null : ref.get();
+                if (hub == null) {
+                    hub = new ListenerHub(pi);
+                    HUBS.put(project, new WeakReference<ListenerHub>(hub));
+                }
+                return hub;
+            }
+        }
+
+        synchronized void register(GroupNode node) {
+            for (Iterator<Reference<GroupNode>> it = nodes.iterator(); it.hasNext();) {
+                if (it.next().get() == null) {
+                    it.remove();
+                }
+            }
+            nodes.add(new WeakReference<GroupNode>(node));
+            if (!groups.containsKey(node.group)) {
+                groups.put(node.group, Boolean.TRUE);
+                node.group.addPropertyChangeListener(WeakListeners.propertyChange(this, node.group));
+            }
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            String prop = evt.getPropertyName();
+            Integer changes = CHANGES.get(prop);
+            if (changes == null) {
+                assert false : "Attempt to fire an unsupported property change event from " + evt.getSource().getClass().getName() + ": " + prop;
+                return;
+            }
+            if (changes == 0) {
+                return;
+            }
+            synchronized (this) {
+                Object source = evt.getSource();
+                if (source == pi) {
+                    projectChanges |= changes;
+                } else if (source instanceof SourceGroup) {
+                    SourceGroup g = (SourceGroup) source;
+                    Integer pending = groupChanges.get(g);
+                    groupChanges.put(g, pending == null ? changes : pending | changes);
+                } else {
+                    return;
+                }
+            }
+            fireTask.schedule(COALESCE_DELAY);
+        }
+
+        @Override
+        public void run() {
+            List<GroupNode> alive = new ArrayList<GroupNode>();
+            int forAll;
+            Map<SourceGroup, Integer> byGroup;
+            synchronized (this) {
+                forAll = projectChanges;
+                byGroup = new HashMap<SourceGroup, Integer>(groupChanges);
+                projectChanges = 0;
+                groupChanges.clear();
+                for (Reference<GroupNode> ref : nodes) {
+                    GroupNode node = ref.get();
+                    if (node != null) {
+                        alive.add(node);
+                    }
+                }
+            }
+            for (GroupNode node : alive) {
+                Integer changes = byGroup.get(node.group);
+                int all = changes == null ? forAll : forAll | changes;
+                if (all != 0) {
+                    node.fireChanges(all);
+                }
+            }
+        }
+    }
+
     /* XXX disabled for now pending resolution of interaction with planned VCS annotations (color only):
     /**
      * Specially displays nodes corresponding to files which are not contained in this source group.
@@ -362,9 +529,22 @@ public class PhysicalView {
     
     }
      */
+    /**
+     * Finds the node of a file below a group node. Found nodes are kept by
+     * their path relative to the group, so that repeated lookups of the same
+     * file need not walk the nodes again. Nothing listens for changes of the
+     * files: a cached node is only returned if it still represents the file
+     * and is still below the root, otherwise it is dropped and looked up
+     * again. Nodes are kept softly, and entries of collected nodes are
+     * removed with the next lookup.
+     */
     public static class PathFinder {
 
         private SourceGroup group;
+        /** the root the cached nodes belong to */
+        private Reference<Node> cachedRoot;
+        private final Map<String, CachedNode> cache = new HashMap<String, CachedNode>();
+        private final ReferenceQueue<Node> collected = new ReferenceQueue<Node>();
 
         public PathFinder(SourceGroup group) {
             this.group = group;
@@ -382,46 +562,117 @@ public class PhysicalView {
                 // The group contains the object
 
                 String relPath = FileUtil.getRelativePath(groupRoot, fo);
-
-                ArrayList<String> path = new ArrayList<String>();
-                StringTokenizer strtok = new StringTokenizer(relPath, "/"); // NOI18N
-                while (strtok.hasMoreTokens()) {
-                    path.add(strtok.nextToken());
-                }
-
-                if (path.size() > 0) {
-                    path.remove(path.size() - 1);
-                } else {
-                    return null;
-                }
-                try {
-                    //#75205
-                    Node parent = NodeOp.findPath(root, Collections.enumeration(path));
-                    if (parent != null) {
-                        //not nice but there isn't a findNodes(name) method.
-                        Node[] nds = parent.getChildren().getNodes(true);
-                        for (int i = 0; i < nds.length; i++) {
-                            DataObject dobj = nds[i].getLookup().lookup(DataObject.class);
-                            if (dobj != null && fo.equals(dobj.getPrimaryFile())) {
-                                return nds[i];
-                            }
-                        }
-                        String name = fo.getName();
-                        try {
-                            DataObject dobj = DataObject.find(fo);
-                            name = dobj.getNodeDelegate().getName();
-                        } catch (DataObjectNotFoundException ex) {
-                        }
-                        return parent.getChildren().findChild(name);
+                Node node = getCached(root, relPath, fo);
+                if (node == null) {
+                    node = findUncached(root, fo, relPath);
+                    if (node != null && represents(node, fo)) {
+                        putCached(root, relPath, node);
                     }
-                } catch (NodeNotFoundException e) {
-                    return null;
                 }
+                return node;
             } else if (groupRoot.equals(fo)) {
                 return root;
             }
 
             return null;
         }
+
+        private static Node findUncached(Node root, FileObject fo, String relPath) {
+            ArrayList<String> path = new ArrayList<String>();
+            StringTokenizer strtok = new StringTokenizer(relPath, "/"); // NOI18N
+            while (strtok.hasMoreTokens()) {
+                path.add(strtok.nextToken());
+            }
+
+            if (path.size() > 0) {
+                path.remove(path.size() - 1);
+            } else {
+                return null;
+            }
+            try {
+                //#75205
+                Node parent = NodeOp.findPath(root, Collections.enumeration(path));
+                if (parent != null) {
+                    //not nice but there isn't a findNodes(name) method.
+                    Node[] nds = parent.getChildren().getNodes(true);
+                    for (int i = 0; i < nds.length; i++) {
+                        DataObject dobj = nds[i].getLookup().lookup(DataObject.class);
+                        if (dobj != null && fo.equals(dobj.getPrimaryFile())) {
+                            return nds[i];
+                        }
+                    }
+                    String name = fo.getName();
+                    try {
+                        DataObject dobj = DataObject.find(fo);
+                        name = dobj.getNodeDelegate().getName();
+                    } catch (DataObjectNotFoundException ex) {
+                    }
+                    return parent.getChildren().findChild(name);
+                }
+            } catch (NodeNotFoundException e) {
+                return null;
+            }
+            return null;
+        }
+
+        private static boolean represents(Node node, FileObject fo) {
+            DataObject dobj = node.getLookup().lookup(DataObject.class);
+            return dobj != null && dobj.isValid() && fo.equals(dobj.getPrimaryFile());
+        }
+
+        /**
+         * @return the cached node, if it still represents {@code fo} and is
+         * still a descendant of {@code root}
+         */
+        private synchronized Node getCached(Node root, String relPath, FileObject fo) {
+            expungeCollected();
+            if (cachedRoot == null || cachedRoot.get() != root) {
+                return null;
+            }
+            CachedNode ref = cache.get(relPath);
+            Node node = ref == null ? null : ref.get();
+            if (node == null) {
+                return null;
+            }
+            Node n = node;
+            while (n != null && n != root) {
+                n = n.getParentNode();
+            }
+            if (n == null || !represents(node, fo)) {
+                cache.remove(relPath);
+                return null;
+            }
+            return node;
+        }
+
+        private synchronized void putCached(Node root, String relPath, Node node) {
+            expungeCollected();
+            if (cachedRoot == null || cachedRoot.get() != root) {
+                cache.clear();
+                cachedRoot = new WeakReference<Node>(root);
+            }
+            cache.put(relPath, new CachedNode(node, relPath, collected));
+        }
+
+        private void expungeCollected() {
+            Reference<? extends Node> ref;
+            while ((ref = collected.poll()) != null) {
+                String relPath = ((CachedNode) ref).relPath;
+                // the path may have been cached again since
+                if (cache.get(relPath) == ref) {
+                    cache.remove(relPath);
+                }
+            }
+        }
+
+        private static final class CachedNode extends SoftReference<Node> {
+
+            final String relPath;
+
+            CachedNode(Node node, String relPath, ReferenceQueue<Node> queue) {
+                super(node, queue);
+                this.relPath = relPath;
+            }
+        }
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectUtils;
+import org.netbeans.api.project.SourceGroup;
+import org.netbeans.api.project.Sources;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.WeakListeners;
+
+/**
+ * The generic source groups of a project, indexed by the path of their root
+ * folders. Finding the groups containing a file walks down a trie of path
+ * segments, so it depends on the depth of the file, not on the number of
+ * groups. The index is rebuilt after the project's {@link Sources} changed.
+ */
+final class SourceGroupIndex implements ChangeListener {
+
+    private static final Map<Project, Reference<SourceGroupIndex>> INDEXES =
+            new WeakHashMap<Project, Reference<SourceGroupIndex>>();
+
+    private final Sources sources;
+    private SourceGroup[] groups;
+    private TrieNode root;
+
+    private SourceGroupIndex(Sources sources) {
+        this.sources = sources;
+        sources.addChangeListener(WeakListeners.change(this, sources));
+    }
+
+    static SourceGroupIndex forProject(Project project) {
+        synchronized (INDEXES) {
+            Reference<SourceGroupIndex> ref = INDEXES.get(project);
+            SourceGroupIndex index = ref == null ? null : ref.get();
+            if (index == null) {
+                index = new SourceGroupIndex(ProjectUtils.getSources(project));
+                INDEXES.put(project, new SoftReference<SourceGroupIndex>(index));
+            }
+            return index;
+        }
+    }
+
+    @Override
+    public synchronized void stateChanged(ChangeEvent e) {
+        groups = null;
+        root = null;
+    }
+
+    synchronized SourceGroup[] getGroups() {
+        if (groups == null) {
+            groups = sources.getSourceGroups(Sources.TYPE_GENERIC);
+            root = new TrieNode();
+            for (int i = 0; i < groups.length; i++) {
+                TrieNode node = root;
+                for (String segment : segments(groups[i].getRootFolder())) {
+                    node = node.getOrCreateChild(segment);
+                }
+                node.addGroup(i);
+            }
+        }
+        return groups.clone();
+    }
+
+    /**
+     * Returns all groups whose root folder is {@code fo} or one of its
+     * parents, in the order of {@link #getGroups()}.
+     */
+    synchronized List<SourceGroup> findGroups(FileObject fo) {
+        getGroups();
+        List<Integer> found = new ArrayList<Integer>(2);
+        TrieNode node = root;
+        node.collect(found);
+        for (String segment : segments(fo)) {
+            node = node.getChild(segment);
+            if (node == null) {
+                break;
+            }
+            node.collect(found);
+        }
+        Collections.sort(found);
+
+        List<SourceGroup> result = new ArrayList<SourceGroup>(found.size());
+        for (int i : found) {
+            // paths are equal only within the same filesystem
+            FileObject groupRoot = groups[i].getRootFolder();
+            if (groupRoot.equals(fo) || FileUtil.isParentOf(groupRoot, fo)) {
+                result.add(groups[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first group whose root folder is {@code fo} or one of its
+     * parents.
+     *
+     * @return the group or null if no group contains {@code fo}
+     */
+    SourceGroup findGroup(FileObject fo) {
+        List<SourceGroup> l = findGroups(fo);
+        return l.isEmpty() ? null : l.get(0);
+    }
+
+    private static String[] segments(FileObject fo) {
+        String path = fo.getPath();
+        return path.length() == 0 ? new String[0] : path.split("/"); // NOI18N
+    }
+
+    private static final class TrieNode {
+
+        private Map<String, TrieNode> children;
+        /** positions of the groups rooted here */
+        private int[] groupIndexes;
+
+        TrieNode getChild(String segment) {
+            return children == null ? null : children.get(segment);
+        }
+
+        TrieNode getOrCreateChild(String segment) {
+            if (children == null) {
+                children = new HashMap<String, TrieNode>(4);
+            }
+            TrieNode child = children.get(segment);
+            if (child == null) {
+                child = new TrieNode();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        void addGroup(int index) {
+            if (groupIndexes == null) {
+                groupIndexes = new int[]{index};
+            } else {
+                int[] a = new int[groupIndexes.length + 1];
+                System.arraycopy(groupIndexes, 0, a, 0, groupIndexes.length);
+                a[groupIndexes.length] = index;
+                groupIndexes = a;
+            }
+        }
+
+        void collect(List<Integer> found) {
+            if (groupIndexes != null) {
+                for (int i : groupIndexes) {
+                    found.add(i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.netbeans.api.queries.FileEncodingQuery;
+import org.openide.filesystems.FileAttributeEvent;
+import org.openide.filesystems.FileChangeListener;
+import org.openide.filesystems.FileEvent;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
+
+/**
+ * Keeps the parsed FreeMarker templates for the whole IDE session, so that
+ * creating a filter does not parse {@code ImageFilter.h} and
+ * {@code ImageFilter.hxx} again. An entry is dropped as soon as its template
+ * changes, and is ignored if the template's time stamp differs from the one
+ * it was parsed at.
+ */
+final class TemplateCache {
+
+    private static final TemplateCache INSTANCE = new TemplateCache();
+
+    private final Configuration configuration;
+    private final ConcurrentMap<FileObject, Entry> entries = new ConcurrentHashMap<FileObject, Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final FileChangeListener invalidator = new Invalidator();
+
+    @SuppressWarnings("deprecation")
+    private TemplateCache() {
+        // the versioned constructor needs a newer FreeMarker than the
+        // library module bundles; the default is the behavior of the IDE's
+        // template engine, so customized templates expand as before
+        configuration = new Configuration();
+        configuration.setLocalizedLookup(false);
+    }
+
+    static TemplateCache getDefault() {
+        return INSTANCE;
+    }
+
+    Template getTemplate(FileObject fo) throws IOException {
+        long lastModified = fo.lastModified().getTime();
+        Entry entry = entries.get(fo);
+        if (entry != null && entry.lastModified == lastModified) {
+            hits.incrementAndGet();
+            return entry.template;
+        }
+
+        misses.incrementAndGet();
+        WizardMetrics.countFileSystemCall();
+        Reader reader = new InputStreamReader(fo.getInputStream(), FileEncodingQuery.getEncoding(fo));
+        Template template;
+        try {
+            template = new Template(fo.getPath(), reader, configuration);
+        } finally {
+            reader.close();
+        }
+
+        if (entries.put(fo, new Entry(lastModified, template)) == null) {
+            fo.addFileChangeListener(invalidator);
+        }
+        return template;
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    void clear() {
+        for (FileObject fo : entries.keySet()) {
+            invalidate(fo);
+        }
+    }
+
+    private void invalidate(FileObject fo) {
+        if (entries.remove(fo) != null) {
+            fo.removeFileChangeListener(invalidator);
+        }
+    }
+
+    private static final class Entry {
+
+        final long lastModified;
+        final Template template;
+
+        Entry(long lastModified, Template template) {
+            this.lastModified = lastModified;
+            this.template = template;
+        }
+    }
+
+    private final class Invalidator implements FileChangeListener {
+
+        @Override
+        public void fileChanged(FileEvent fe) {
+            invalidate(fe.getFile());
+        }
+
+        @Override
+        public void fileDeleted(FileEvent fe) {
+            invalidate(fe.getFile());
+        }
+
+        @Override
+        public void fileRenamed(FileRenameEvent fe) {
+            invalidate(fe.getFile());
+        }
+
+        @Override
+        public void fileAttributeChanged(FileAttributeEvent fe) {
+            // the template engine is configured by attributes
+            invalidate(fe.getFile());
+        }
+
+        @Override
+        public void fileFolderCreated(FileEvent fe) {
+        }
+
+        @Override
+        public void fileDataCreated(FileEvent fe) {
+        }
+    }
+}
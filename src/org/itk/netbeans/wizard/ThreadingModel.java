@@ -0,0 +1,73 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.util.Locale;
+import org.openide.util.NbBundle;
+
+/**
+ * The method a generated filter implements to produce its output.
+ */
+public enum ThreadingModel {
+
+    /** {@code GenerateData()} */
+    SINGLE("single"), // NOI18N
+    /** {@code ThreadedGenerateData(region, threadId)} with one region per thread */
+    CLASSIC("classic"), // NOI18N
+    /** {@code DynamicThreadedGenerateData(region)}, load balanced by the multi-threader */
+    DYNAMIC("dynamic"); // NOI18N
+
+    private final String id;
+
+    private ThreadingModel(String id) {
+        this.id = id;
+    }
+
+    /**
+     * The value of the {@code threading} template variable.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return NbBundle.getMessage(ThreadingModel.class, "LBL_Threading_" + name()); // NOI18N
+    }
+
+    /**
+     * Parses an id, or {@code true} and {@code false} for the classic and
+     * single-threaded model as written before there were several models.
+     *
+     * @throws IllegalArgumentException if {@code value} is none of these
+     */
+    public static ThreadingModel parse(String value) {
+        String lower = value.toLowerCase(Locale.ENGLISH);
+        if ("true".equals(lower)) { // NOI18N
+            return CLASSIC;
+        } else if ("false".equals(lower)) { // NOI18N
+            return SINGLE;
+        }
+        for (ThreadingModel model : values()) {
+            if (model.id.equals(lower)) {
+                return model;
+            }
+        }
+        throw new IllegalArgumentException("Unknown threading model " + value); // NOI18N
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.openide.modules.OnStop;
+
+/**
+ * Measures how long the steps of the wizard take and how many filesystem
+ * calls they make. The numbers are available through JMX, and every
+ * measurement is logged as a {@code WIZARD_STEP} record with the step, the
+ * duration in milliseconds and the filesystem calls as parameters to the
+ * {@code org.itk.netbeans.wizard.metrics} logger at level FINE.
+ * <p>
+ * Filesystem calls are counted globally, so calls made by background tasks
+ * started by a step are counted for it too. The bean is unregistered when
+ * the module is stopped.
+ */
+public final class WizardMetrics implements WizardMetricsMXBean {
+
+    static final String GET_PANELS = "getPanels"; // NOI18N
+    static final String READ_SETTINGS = "readSettings"; // NOI18N
+    static final String STORE_SETTINGS = "storeSettings"; // NOI18N
+    static final String INIT_VALUES = "initValues"; // NOI18N
+    static final String SHOW_DIALOG = "showDialog"; // NOI18N
+    static final String INSTANTIATE = "instantiate"; // NOI18N
+
+    static final String OBJECT_NAME = "org.itk.netbeans.wizard:type=WizardMetrics"; // NOI18N
+    private static final Logger LOG = Logger.getLogger("org.itk.netbeans.wizard.metrics"); // NOI18N
+    private static final WizardMetrics INSTANCE = new WizardMetrics();
+
+    static {
+        INSTANCE.register();
+    }
+
+    private final ConcurrentMap<String, Statistics> steps = new ConcurrentHashMap<String, Statistics>();
+    private final AtomicLong fileSystemCalls = new AtomicLong();
+
+    private WizardMetrics() {
+    }
+
+    /**
+     * Starts measuring a step. Call {@link Measurement#stop()} in a
+     * finally block.
+     */
+    static Measurement start(String step) {
+        return new Measurement(step, INSTANCE.fileSystemCalls.get());
+    }
+
+    static void countFileSystemCall() {
+        INSTANCE.fileSystemCalls.incrementAndGet();
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException ex) {
+                // left over by a previous version of this module
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException ex) {
+            LOG.log(Level.INFO, "Cannot register " + OBJECT_NAME, ex); // NOI18N
+        }
+    }
+
+    private Statistics getStatistics(String step) {
+        Statistics stats = steps.get(step);
+        if (stats == null) {
+            Statistics s = new Statistics();
+            stats = steps.putIfAbsent(step, s);
+            if (stats == null) {
+                stats = s;
+            }
+        }
+        return stats;
+    }
+
+    private Statistics findStatistics(String step) {
+        Statistics stats = steps.get(step);
+        return stats == null ? new Statistics() : stats;
+    }
+
+    @Override
+    public String[] getSteps() {
+        return steps.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public Map<String, StepStatistics> getStepStatistics() {
+        Map<String, StepStatistics> result = new TreeMap<String, StepStatistics>();
+        for (Map.Entry<String, Statistics> entry : steps.entrySet()) {
+            Statistics stats = entry.getValue();
+            result.put(entry.getKey(), new StepStatistics(stats.getCount(),
+                    TimeUnit.NANOSECONDS.toMillis(stats.getTotalNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(stats.getMaxNanos()), stats.getFileSystemCalls()));
+        }
+        return result;
+    }
+
+    @Override
+    public long getInvocationCount(String step) {
+        return findStatistics(step).getCount();
+    }
+
+    @Override
+    public long getTotalMillis(String step) {
+        return TimeUnit.NANOSECONDS.toMillis(findStatistics(step).getTotalNanos());
+    }
+
+    @Override
+    public long getMaxMillis(String step) {
+        return TimeUnit.NANOSECONDS.toMillis(findStatistics(step).getMaxNanos());
+    }
+
+    @Override
+    public long getFileSystemCalls(String step) {
+        return findStatistics(step).getFileSystemCalls();
+    }
+
+    @Override
+    public long getTotalFileSystemCalls() {
+        return fileSystemCalls.get();
+    }
+
+    @Override
+    public long getTemplateCacheHits() {
+        return TemplateCache.getDefault().getHitCount();
+    }
+
+    @Override
+    public long getTemplateCacheMisses() {
+        return TemplateCache.getDefault().getMissCount();
+    }
+
+    @Override
+    public void reset() {
+        steps.clear();
+    }
+
+    /**
+     * The numbers of one step, as shown in the {@code StepStatistics}
+     * attribute.
+     */
+    public static final class StepStatistics {
+
+        private final long invocationCount;
+        private final long totalMillis;
+        private final long maxMillis;
+        private final long fileSystemCalls;
+
+        @ConstructorProperties({"invocationCount", "totalMillis", "maxMillis", "fileSystemCalls"}) // NOI18N
+        public StepStatistics(long invocationCount, long totalMillis, long maxMillis, long fileSystemCalls) {
+            this.invocationCount = invocationCount;
+            this.totalMillis = totalMillis;
+            this.maxMillis = maxMillis;
+            this.fileSystemCalls = fileSystemCalls;
+        }
+
+        public long getInvocationCount() {
+            return invocationCount;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        /** Filesystem calls made while the step was running. */
+        public long getFileSystemCalls() {
+            return fileSystemCalls;
+        }
+    }
+
+    /**
+     * Unregisters the bean when the module is disabled, uninstalled or the
+     * IDE exits, so that the module's class loader can be collected.
+     */
+    @OnStop
+    public static final class Unregistration implements Runnable {
+
+        @Override
+        public void run() {
+            // does not touch WizardMetrics, which would register the bean
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException ex) {
+                Logger.getLogger(WizardMetrics.class.getName()).log(Level.INFO,
+                        "Cannot unregister " + OBJECT_NAME, ex); // NOI18N
+            }
+        }
+    }
+
+    static final class Measurement {
+
+        private final String step;
+        private final long startNanos;
+        private final long startFileSystemCalls;
+
+        private Measurement(String step, long startFileSystemCalls) {
+            this.step = step;
+            this.startFileSystemCalls = startFileSystemCalls;
+            this.startNanos = System.nanoTime();
+        }
+
+        void stop() {
+            long nanos = System.nanoTime() - startNanos;
+            long calls = INSTANCE.fileSystemCalls.get() - startFileSystemCalls;
+            INSTANCE.getStatistics(step).add(nanos, calls);
+
+            if (LOG.isLoggable(Level.FINE)) {
+                LogRecord rec = new LogRecord(Level.FINE, "WIZARD_STEP"); // NOI18N
+                rec.setLoggerName(LOG.getName());
+                rec.setParameters(new Object[]{step, TimeUnit.NANOSECONDS.toMillis(nanos), calls});
+                LOG.log(rec);
+            }
+        }
+    }
+
+    private static final class Statistics {
+
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long fileSystemCalls;
+
+        synchronized void add(long nanos, long calls) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            fileSystemCalls += calls;
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+
+        synchronized long getFileSystemCalls() {
+            return fileSystemCalls;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link WizardMetrics}, registered as
+ * {@code org.itk.netbeans.wizard:type=WizardMetrics}.
+ */
+public interface WizardMetricsMXBean {
+
+    /** Names of the steps measured so far. */
+    String[] getSteps();
+
+    /** The statistics of all steps measured so far, by step. */
+    Map<String, WizardMetrics.StepStatistics> getStepStatistics();
+
+    long getInvocationCount(String step);
+
+    long getTotalMillis(String step);
+
+    long getMaxMillis(String step);
+
+    /** Filesystem calls made while the step was running. */
+    long getFileSystemCalls(String step);
+
+    long getTotalFileSystemCalls();
+
+    long getTemplateCacheHits();
+
+    long getTemplateCacheMisses();
+
+    void reset();
+}
@@ -0,0 +1,111 @@
+/*
+ * Netbeans plugin to create ITK image filters.
+ * Copyright (C) 2013  Sebastian Pölsterl <sebp@k-d-w.org>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.itk.netbeans.wizard;
+
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.SourceGroup;
+import org.openide.filesystems.FileObject;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Computes the initial values of {@link NewItkFilterVisualPanel1} in the
+ * background, as soon as the template was chosen, so that the panel does not
+ * need to query the project and scan the target folder when it is shown.
+ */
+final class WizardPrewarm implements Runnable {
+
+    private static final RequestProcessor RP = new RequestProcessor(WizardPrewarm.class.getName());
+
+    private final Project project;
+    private final FileObject preselectedFolder;
+    private final RequestProcessor.Task task;
+    private volatile Values values;
+
+    private WizardPrewarm(Project project, FileObject preselectedFolder) {
+        this.project = project;
+        this.preselectedFolder = preselectedFolder;
+        this.task = RP.create(this);
+    }
+
+    /**
+     * Starts computing the values for a panel which will be opened for
+     * {@code preselectedFolder}.
+     */
+    static WizardPrewarm start(Project project, FileObject preselectedFolder) {
+        WizardPrewarm prewarm = new WizardPrewarm(project, preselectedFolder);
+        prewarm.task.schedule(0);
+        return prewarm;
+    }
+
+    @Override
+    public void run() {
+        values = compute(project, preselectedFolder);
+    }
+
+    /**
+     * Returns the precomputed values, waiting for them if they are not
+     * ready yet.
+     *
+     * @return the values or null if they were computed for another project
+     * or folder
+     */
+    Values get(Project project, FileObject preselectedFolder) {
+        if (this.project != project || (this.preselectedFolder == null
+                ? preselectedFolder != null : !this.preselectedFolder.equals(preselectedFolder))) {
+            return null;
+        }
+        task.waitFinished();
+        return values;
+    }
+
+    static Values compute(Project project, FileObject preselectedFolder) {
+        SourceGroupIndex index = SourceGroupIndex.forProject(project);
+        SourceGroup[] groups = index.getGroups();
+        // Guess the group we want to create the file in
+        SourceGroup preselectedGroup = NewItkFilterVisualPanel1.getPreselectedGroup(index, preselectedFolder);
+        // Create OS dependent relative name
+        String relativeFolder = NewItkFilterVisualPanel1.getRelativeNativeName(
+                preselectedGroup.getRootFolder(), preselectedFolder);
+
+        String suggestedName = NewItkFilterVisualPanel1.getMessage("NewClassSuggestedName"); // NOI18N
+        FileObject currentFolder = preselectedFolder != null ? preselectedFolder : preselectedGroup.getRootFolder();
+        if (currentFolder != null) {
+            suggestedName += NewItkFilterVisualPanel1.generateUniqueSuffix(
+                    currentFolder, suggestedName,
+                    NewItkFilterVisualPanel1.sourceExt, NewItkFilterVisualPanel1.headerExt);
+        }
+        return new Values(groups, preselectedGroup, relativeFolder, suggestedName);
+    }
+
+    static final class Values {
+
+        final SourceGroup[] groups;
+        final SourceGroup preselectedGroup;
+        final String relativeFolder;
+        final String suggestedName;
+
+        Values(SourceGroup[] groups, SourceGroup preselectedGroup,
+                String relativeFolder, String suggestedName) {
+            this.groups = groups;
+            this.preselectedGroup = preselectedGroup;
+            this.relativeFolder = relativeFolder;
+            this.suggestedName = suggestedName;
+        }
+    }
+}